@@ -1,93 +1,466 @@
 package com.example.android.booksearch;
 
-import android.app.Activity;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * A custom adapter {@link BookAdapter} knows how to create a list item layout for each book
  * in the data source (a list of {@link Book} objects).
  * <p>
- * These list item layouts will be provided to an adapter view like ListView
- * to be populated and displayed to the user.
+ * These list item layouts will be provided to a RecyclerView to be populated and displayed
+ * to the user. The labels shown in a row are built from string resources the first time
+ * the row is bound and kept with the row, so binding it again only sets already built
+ * strings, and books which are never displayed never get labels. Replacing the whole list is
+ * diffed on a background thread, so only the rows which actually changed are rebound.
+ * The books are shown through a {@link ResultView}: sorting, filtering and grouping them runs
+ * on the same background thread, and the new order is published as a diff as well.
+ * Covers are loaded by {@link CoverLoader}, and cancelled when their row is recycled.
+ * The details of the books on screen are prefetched by {@link DetailLoader}.
+ * <p>
+ * Editions of the same work are collapsed into a single row by an {@link EditionClusterer},
+ * whose label lists the other editions when clicked. Appended pages are clustered
+ * incrementally: a book adds a row only if it is a new work, otherwise it updates the row
+ * of its work.
  */
 
-public class BookAdapter extends ArrayAdapter<Book> {
+public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder> {
+
+    /**
+     * Background thread shared by all adapters to apply the result views and calculate
+     * list differences.
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Listener notified when a book of the list is clicked.
+     */
+    public interface OnBookClickListener {
+        void onBookClick(Book book);
+    }
+
+    /**
+     * The editions of a work, the first {@link Book} being the one shown, and the labels of
+     * its row, built when the row is first bound.
+     */
+    private static final class Row {
+        final Book book;
+        final List<Book> editions;
+        String author;
+        String info;
+
+        Row(EditionClusterer.Work work) {
+            // The editions of the work keep growing, the row keeps those it shows.
+            editions = new ArrayList<>(work.getEditions());
+            book = editions.get(0);
+        }
+    }
+
+    /**
+     * Caches the views of a single list item, so they are found only once per item view.
+     */
+    static final class BookViewHolder extends RecyclerView.ViewHolder {
+        final TextView titleTextView;
+        final TextView authorTextView;
+        final TextView infoTextView;
+        final TextView editionsTextView;
+        final ImageView coverImageView;
+
+        BookViewHolder(View itemView) {
+            super(itemView);
+            coverImageView = itemView.findViewById(R.id.imageview_listview_cover);
+            titleTextView = itemView.findViewById(R.id.textview_listview_title);
+            authorTextView = itemView.findViewById(R.id.textview_listview_author);
+            infoTextView = itemView.findViewById(R.id.textview_listview_info);
+            editionsTextView = itemView.findViewById(R.id.textview_listview_editions);
+        }
+    }
+
+    private final LayoutInflater mInflater;
+    private final Resources mResources;
+    private final CoverLoader mCoverLoader;
+    private final DetailLoader mDetailLoader;
+    private final int mCoverWidth;
+    private final int mCoverHeight;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private List<Row> mRows = new ArrayList<>();
+    private OnBookClickListener mOnBookClickListener;
+
+    /**
+     * Clusters the books of the rows: the row at every position shows the work at the same
+     * index, so appended books can be clustered without clustering the list again.
+     */
+    private EditionClusterer mClusterer = new EditionClusterer();
+
+    /**
+     * Keys of the books shown for the works whose editions are listed.
+     */
+    private final HashSet<String> mExpandedWorks = new HashSet<>();
+
+    /**
+     * Every book given to the adapter, in the order it was given, before the view applies.
+     */
+    private List<Book> mBooks = new ArrayList<>();
+
+    /**
+     * How the books are sorted, filtered and grouped.
+     */
+    private ResultView mView = ResultView.DEFAULT;
+
+    /**
+     * Incremented every time the list is replaced, so an outdated diff is never applied.
+     */
+    private int mListGeneration;
 
     /**
-     * This is custom constructor (it doesn't mirror a superclass constructor).
-     * The context is used to inflate the layout file, and the list is the data we want
-     * to populate into the lists (Book details).
+     * True while a new list is being prepared in the background.
+     */
+    private boolean mUpdatePending;
+
+    /**
+     * Create a new {@link BookAdapter} with an empty list of books.
      *
      * @param context The current context. Used to inflate the layout file.
-     * @param books   A List of Book objects to display in a list
      */
-    public BookAdapter(Activity context, ArrayList<Book> books) {
-        // Here, we initialize the ArrayAdapter's internal storage for the context and the list.
-        // The second argument is used when the ArrayAdapter is populating a single TextView.
-        // Because this is a custom adapter for few TextViews and an ImageView, the adapter is not
-        // going to use this second argument, so it can be any value. Here, we used 0.
-        super(context, 0, books);
+    public BookAdapter(Context context) {
+        mInflater = LayoutInflater.from(context);
+        mCoverLoader = CoverLoader.getInstance(context);
+        mDetailLoader = DetailLoader.getInstance(context);
+        mResources = context.getResources();
+        mCoverWidth = mResources.getDimensionPixelSize(R.dimen.width_listview_image);
+        mCoverHeight = mResources.getDimensionPixelSize(R.dimen.height_listview_image);
+    }
+
+    @Override
+    public BookViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = mInflater.inflate(R.layout.item_book, parent, false);
+        final BookViewHolder holder = new BookViewHolder(listItemView);
+        listItemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && mOnBookClickListener != null) {
+                    mOnBookClickListener.onBookClick(mRows.get(position).book);
+                }
+            }
+        });
+        holder.editionsTextView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    String key = mRows.get(position).book.getKey();
+                    if (!mExpandedWorks.remove(key)) {
+                        mExpandedWorks.add(key);
+                    }
+                    notifyItemChanged(position);
+                }
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(BookViewHolder holder, int position) {
+        long start = System.nanoTime();
+
+        // Get the row located at this position in the list
+        // and set its text on the TextViews of the list item.
+        Row row = mRows.get(position);
+        if (row.author == null) {
+            buildLabels(row);
+        }
+        holder.titleTextView.setText(row.book.getTitle());
+        holder.authorTextView.setText(row.author);
+        holder.infoTextView.setText(row.info);
+        bindEditions(holder.editionsTextView, row);
+        mCoverLoader.load(holder.coverImageView, row.book.getThumbnailUrl(),
+                mCoverWidth, mCoverHeight);
+        SearchMetrics.getInstance().record(SearchMetrics.Phase.BIND, System.nanoTime() - start);
+    }
+
+    /**
+     * Build the author and publication labels of the row from the raw book values.
+     */
+    private void buildLabels(Row row) {
+        String notAvailable = mResources.getString(R.string.listview_not_available);
+
+        String authors = row.book.getAuthorNames();
+        row.author = mResources.getString(R.string.listview_author_label,
+                authors != null ? authors : notAvailable);
+
+        row.info = buildInfo(row.book, notAvailable);
     }
 
+    /**
+     * Build the publication label of the book, e.g. "Published by: Signet, 1962".
+     */
+    private String buildInfo(Book book, String notAvailable) {
+        // Get the date of publication and publisher from the Book object.
+        String publisher = book.getPublisher();
+        String publisherLabel = mResources.getString(R.string.listview_publisher_label,
+                publisher != null ? publisher : notAvailable);
+        String date = book.getPublishedDate();
+        return date != null
+                ? mResources.getString(R.string.listview_info_date, publisherLabel, date)
+                : publisherLabel;
+    }
 
     /**
-     * Provides a view for an AdapterView (ListView, GridView, etc.)
-     *
-     * @param position    The position in the list of data that should be displayed in the
-     *                    list item view.
-     * @param convertView The recycled view to populate.
-     * @param parent      The parent ViewGroup that is used for inflation.
-     * @return The View for the position in the AdapterView.
+     * Show the number of editions of the work, followed by the publication of every other
+     * edition when the work is expanded. Hidden for a work with a single edition.
      */
-    @NonNull
+    private void bindEditions(TextView editionsTextView, Row row) {
+        int count = row.editions.size();
+        if (count == 1) {
+            editionsTextView.setVisibility(View.GONE);
+            return;
+        }
+        String label = mResources.getQuantityString(R.plurals.listview_editions, count, count);
+        if (mExpandedWorks.contains(row.book.getKey())) {
+            // Only built while expanded, most works are never expanded.
+            String notAvailable = mResources.getString(R.string.listview_not_available);
+            StringBuilder editions = new StringBuilder(label);
+            for (int i = 1; i < count; i++) {
+                editions.append('\n').append(buildInfo(row.editions.get(i), notAvailable));
+            }
+            label = editions.toString();
+        }
+        editionsTextView.setText(label);
+        editionsTextView.setVisibility(View.VISIBLE);
+    }
+
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+    public void onViewRecycled(BookViewHolder holder) {
+        // The row shows another book now, its cover is no longer needed.
+        mCoverLoader.cancel(holder.coverImageView);
+    }
 
-        // Check if the existing view is being reused, otherwise inflate the view
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.item_book, parent, false);
+    /**
+     * Start loading the covers of the rows in the given range, before they are scrolled
+     * into view.
+     *
+     * @param fromPosition first position to prefetch (inclusive)
+     * @param toPosition   last position to prefetch (exclusive)
+     */
+    public void prefetchCovers(int fromPosition, int toPosition) {
+        int end = Math.min(toPosition, mRows.size());
+        for (int position = Math.max(fromPosition, 0); position < end; position++) {
+            mCoverLoader.prefetch(mRows.get(position).book.getThumbnailUrl(),
+                    mCoverWidth, mCoverHeight);
         }
+    }
+
+    /**
+     * Start loading the details of the books in the given range, e.g. the rows on screen,
+     * so opening one of them is instant. Only the first few are prefetched.
+     *
+     * @param fromPosition first position to prefetch (inclusive)
+     * @param toPosition   last position to prefetch (exclusive)
+     */
+    public void prefetchDetails(int fromPosition, int toPosition) {
+        int end = Math.min(toPosition, mRows.size());
+        ArrayList<String> volumeIds = new ArrayList<>();
+        for (int position = Math.max(fromPosition, 0); position < end; position++) {
+            volumeIds.add(mRows.get(position).book.getId());
+        }
+        mDetailLoader.prefetch(volumeIds);
+    }
+
+    /**
+     * Set the listener notified when a book of the list is clicked.
+     */
+    public void setOnBookClickListener(OnBookClickListener listener) {
+        mOnBookClickListener = listener;
+    }
 
-        // Get the {@link Book} object located at this position in the list
-        Book currentBook = getItem(position);
+    @Override
+    public int getItemCount() {
+        return mRows.size();
+    }
 
-        // Find the TextView in the item_book.xml layout with the ID textview_listview_title
-        TextView titleTextView = listItemView.findViewById(R.id.textview_listview_title);
-        // Get the title from the current Book object and
-        // set this text on the Title TextView
-        titleTextView.setText(currentBook.getTitle());
+    /**
+     * Return the {@link Book} displayed at the given position.
+     */
+    public Book getItem(int position) {
+        return mRows.get(position).book;
+    }
 
-        // Find the TextView in the item_book.xml layout with the ID textview_listview_author
-        TextView authorTextView = listItemView.findViewById(R.id.textview_listview_author);
-        // Get the author from the current Book object and
-        // set this text on the Author TextView
-        authorTextView.setText(currentBook.getAuthor());
+    /**
+     * Return the view the books are currently shown through.
+     */
+    public ResultView getView() {
+        return mView;
+    }
+
+    /**
+     * Show the books through the given view. The books are sorted and filtered again in
+     * the background, then the rows are moved to their new positions.
+     */
+    public void setView(ResultView view) {
+        mView = view;
+        setBooks(mBooks);
+    }
+
+    /**
+     * Append the books after the books already given (e.g. the next page of results).
+     * They are added at the end of the list, unless the view sorts or filters the books.
+     */
+    public void addBooks(List<Book> books) {
+        if (mUpdatePending || !mView.isDefault()) {
+            // The list is being replaced, or the new books may go anywhere in the list:
+            // prepare the whole list again.
+            ArrayList<Book> combined = new ArrayList<>(mBooks);
+            combined.addAll(books);
+            setBooks(combined);
+            return;
+        }
+        mListGeneration++;
+        ArrayList<Book> allBooks = new ArrayList<>(mBooks.size() + books.size());
+        allBooks.addAll(mBooks);
+        allBooks.addAll(books);
+        mBooks = allBooks;
+        ArrayList<Row> rows = new ArrayList<>(mRows.size() + books.size());
+        rows.addAll(mRows);
+        int positionStart = mRows.size();
+        ArrayList<Integer> changedPositions = new ArrayList<>();
+        for (Book book : books) {
+            EditionClusterer.Work work = mClusterer.add(book);
+            int position = work.getIndex();
+            if (position == rows.size()) {
+                rows.add(new Row(work));
+            } else {
+                // Another edition of a work already shown.
+                rows.set(position, new Row(work));
+                if (position < positionStart) {
+                    changedPositions.add(position);
+                }
+            }
+        }
+        mRows = rows;
+        for (int position : changedPositions) {
+            notifyItemChanged(position);
+        }
+        if (rows.size() > positionStart) {
+            notifyItemRangeInserted(positionStart, rows.size() - positionStart);
+        }
+    }
 
-        // Find the TextView in the item_book.xml layout with the ID textview_listview_info
-        TextView infoTextView = listItemView.findViewById(R.id.textview_listview_info);
-        // Get the date of publication and publisher from the current Book object and
-        // set this text on the Info TextView
-        String infoText = currentBook.getPublisher();
-        String date = currentBook.getPublishedDate();
-        if (date != null) {
-            infoText += ", " + date;
+    /**
+     * Replace the books. They are sorted and filtered by the view and compared with the
+     * current rows on a background thread, then only the changed rows are updated.
+     */
+    public void setBooks(List<Book> books) {
+        final int generation = ++mListGeneration;
+        final List<Row> oldRows = mRows;
+        final ResultView view = mView;
+        final List<Book> newBooks = new ArrayList<>(books);
+        mBooks = newBooks;
+        if (view.isDefault() && (newBooks.isEmpty() || oldRows.isEmpty())) {
+            // Nothing to sort nor compare, swap the rows right away.
+            EditionClusterer clusterer = new EditionClusterer();
+            mRows = clusterRows(clusterer, newBooks);
+            mClusterer = clusterer;
+            mUpdatePending = false;
+            notifyDataSetChanged();
+            return;
         }
-        infoTextView.setText(infoText);
 
+        mUpdatePending = true;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Works are clustered in the view order, so every work is shown by its
+                // edition which comes first, e.g. the newest one.
+                final EditionClusterer clusterer = new EditionClusterer();
+                final ArrayList<Row> newRows = clusterRows(clusterer, view.apply(newBooks));
+                final DiffUtil.DiffResult diffResult =
+                        DiffUtil.calculateDiff(new RowDiffCallback(oldRows, newRows));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mListGeneration) {
+                            return;
+                        }
+                        mRows = newRows;
+                        mClusterer = clusterer;
+                        mUpdatePending = false;
+                        diffResult.dispatchUpdatesTo(BookAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cluster the books with the clusterer and return a row for every work.
+     */
+    private static ArrayList<Row> clusterRows(EditionClusterer clusterer, List<Book> books) {
+        for (Book book : books) {
+            clusterer.add(book);
+        }
+        List<EditionClusterer.Work> works = clusterer.getWorks();
+        ArrayList<Row> rows = new ArrayList<>(works.size());
+        for (EditionClusterer.Work work : works) {
+            rows.add(new Row(work));
+        }
+        return rows;
+    }
 
-        // Return the whole list item layout (containing 3 TextViews and 1 ImageView)
-        // so that it can be shown in the ListView
-        return listItemView;
+    /**
+     * Remove all books from the list.
+     */
+    public void clear() {
+        setBooks(new ArrayList<Book>());
     }
 
+    /**
+     * Compares two lists of rows for {@link DiffUtil}.
+     */
+    private static final class RowDiffCallback extends DiffUtil.Callback {
+        private final List<Row> mOldRows;
+        private final List<Row> mNewRows;
+
+        RowDiffCallback(List<Row> oldRows, List<Row> newRows) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).book.equals(mNewRows.get(newItemPosition).book);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            // Books are compared by all displayed values, equal books display the same text,
+            // only the editions of their work may have changed.
+            return mOldRows.get(oldItemPosition).editions
+                    .equals(mNewRows.get(newItemPosition).editions);
+        }
+    }
 }
@@ -0,0 +1,393 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads book cover thumbnails into {@link ImageView}s without blocking the main thread.
+ * <p>
+ * Covers are downloaded and decoded on background threads, downsampled to the size they
+ * are displayed at. Decoded bitmaps are kept in a memory cache bounded by bytes, and the
+ * downloaded images in a disk cache, so scrolling back to a row never downloads its cover
+ * again. A request is cancelled when its row is recycled before the cover arrives.
+ * <p>
+ * All public methods must be called on the main thread.
+ */
+
+public final class CoverLoader {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = CoverLoader.class.getSimpleName();
+
+    /**
+     * Part of the app heap which may be used by decoded covers.
+     */
+    private static final int MEMORY_CACHE_HEAP_FRACTION = 8;
+
+    /**
+     * Maximum size (in bytes) of the downloaded covers kept on disk.
+     */
+    private static final long DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * Name of the disk cache directory (inside the app cache dir).
+     */
+    private static final String DISK_CACHE_DIR = "covers";
+
+    /**
+     * Downloads bigger than this (in bytes) are not covers, they are dropped.
+     */
+    private static final int MAX_COVER_BYTES = 512 * 1024;
+
+    /**
+     * Number of covers loaded at the same time.
+     */
+    private static final int POOL_SIZE = 2;
+
+    /**
+     * Single instance shared by the whole app.
+     */
+    private static CoverLoader sInstance;
+
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final DiskCacheDirectory mDiskCache;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Requests in progress, by cache key. A prefetch and a displayed row asking for
+     * the same cover share one request.
+     */
+    private final HashMap<String, Request> mRequests = new HashMap<>();
+
+    /**
+     * A single cover being loaded, and the view waiting for it (if any).
+     */
+    private final class Request implements Runnable {
+        final String url;
+        final String key;
+        final int width;
+        final int height;
+        ImageView imageView;
+        Future<?> future;
+
+        Request(String url, String key, int width, int height) {
+            this.url = url;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void run() {
+            final Bitmap bitmap = loadBitmap(url, key, width, height);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLoaded(Request.this, bitmap);
+                }
+            });
+        }
+    }
+
+    private CoverLoader(Context context) {
+        int memoryCacheBytes =
+                (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_HEAP_FRACTION);
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        mDiskCache = new DiskCacheDirectory(
+                new File(context.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_BYTES);
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "CoverLoader");
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the loader shared by the whole app, creating it on first use.
+     */
+    public static CoverLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CoverLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Display the cover at the given URL in the view, downsampled to the given size.
+     * Any cover previously requested for the view is cancelled.
+     *
+     * @param imageView view to display the cover in
+     * @param url       URL of the cover, or null if the book has none
+     * @param width     width (in pixels) the cover is displayed at
+     * @param height    height (in pixels) the cover is displayed at
+     */
+    public void load(ImageView imageView, String url, int width, int height) {
+        cancel(imageView);
+        if (url == null) {
+            imageView.setImageDrawable(null);
+            return;
+        }
+        String key = createKey(url, width, height);
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+        Request request = enqueue(url, key, width, height);
+        if (request != null) {
+            request.imageView = imageView;
+            imageView.setTag(R.id.imageview_listview_cover, request);
+        }
+    }
+
+    /**
+     * Load the cover into the memory cache ahead of time, e.g. for a row about to be
+     * scrolled into view.
+     */
+    public void prefetch(String url, int width, int height) {
+        if (url == null) {
+            return;
+        }
+        String key = createKey(url, width, height);
+        if (mMemoryCache.get(key) == null) {
+            enqueue(url, key, width, height);
+        }
+    }
+
+    /**
+     * Stop loading the cover requested for the view, e.g. when its row is recycled.
+     */
+    public void cancel(ImageView imageView) {
+        Object tag = imageView.getTag(R.id.imageview_listview_cover);
+        if (!(tag instanceof Request)) {
+            return;
+        }
+        imageView.setTag(R.id.imageview_listview_cover, null);
+        Request request = (Request) tag;
+        if (request.imageView != imageView) {
+            return;
+        }
+        request.imageView = null;
+        if (request.future != null && request.future.cancel(false)) {
+            // Not started yet, drop it from the queue.
+            mRequests.remove(request.key);
+            mExecutor.purge();
+        }
+    }
+
+    /**
+     * Start loading the cover, or return the request already loading it.
+     */
+    private Request enqueue(String url, String key, int width, int height) {
+        Request request = mRequests.get(key);
+        if (request != null) {
+            return request;
+        }
+        request = new Request(url, key, width, height);
+        try {
+            request.future = mExecutor.submit(request);
+        } catch (RejectedExecutionException e) {
+            Log.e(LOG_TAG, "Cannot load cover " + url, e);
+            return null;
+        }
+        mRequests.put(key, request);
+        return request;
+    }
+
+    /**
+     * Store the loaded cover and display it, if its view is still waiting for it.
+     */
+    private void onLoaded(Request request, Bitmap bitmap) {
+        if (mRequests.get(request.key) == request) {
+            mRequests.remove(request.key);
+        }
+        if (bitmap != null) {
+            mMemoryCache.put(request.key, bitmap);
+        }
+        ImageView imageView = request.imageView;
+        if (imageView != null && imageView.getTag(R.id.imageview_listview_cover) == request) {
+            imageView.setTag(R.id.imageview_listview_cover, null);
+            imageView.setImageBitmap(bitmap);
+        }
+    }
+
+    private static String createKey(String url, int width, int height) {
+        return url + '#' + width + 'x' + height;
+    }
+
+    /**
+     * Return the decoded cover, reading it from the disk cache or downloading it.
+     * Runs on a background thread.
+     */
+    private Bitmap loadBitmap(String url, String key, int width, int height) {
+        File file = mDiskCache.fileFor(url, ".img");
+        byte[] data = null;
+        if (file.isFile()) {
+            try {
+                data = readFully(new FileInputStream(file), (int) file.length());
+                mDiskCache.touch(file);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem reading cached cover " + file, e);
+            }
+        }
+        if (data == null) {
+            data = download(url);
+            if (data == null) {
+                return null;
+            }
+            writeToDisk(file, data);
+        }
+        return decode(data, width, height);
+    }
+
+    /**
+     * Download the image at the given URL. Returns null if the download failed.
+     */
+    private static byte[] download(String url) {
+        HttpURLConnection urlConnection = null;
+        boolean completed = false;
+        try {
+            urlConnection = HttpConnections.openGet(new URL(url));
+            if (urlConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.e(LOG_TAG, "Error response code " + urlConnection.getResponseCode()
+                        + " for cover " + url);
+                completed = true;
+                return null;
+            }
+            byte[] data = readFully(HttpConnections.openBody(urlConnection),
+                    urlConnection.getContentLength());
+            // The body has been read to the end and closed, the connection is reusable.
+            completed = true;
+            return data;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem downloading cover " + url, e);
+            return null;
+        } finally {
+            if (urlConnection != null) {
+                if (completed) {
+                    // Keep the connection alive for the next cover.
+                    HttpConnections.release(urlConnection, null);
+                } else {
+                    urlConnection.disconnect();
+                }
+            }
+        }
+    }
+
+    /**
+     * Store the downloaded image in the disk cache.
+     */
+    private void writeToDisk(File file, byte[] data) {
+        File tempFile = mDiskCache.tempFileFor(file);
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(tempFile);
+            output.write(data);
+            output.close();
+            output = null;
+            mDiskCache.commit(tempFile, file);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem caching cover " + file, e);
+            tempFile.delete();
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing cover file", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode the image, skipping pixels so the bitmap is not (much) bigger than the size
+     * it is displayed at.
+     */
+    private static Bitmap decode(byte[] data, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        // Covers have no transparency, use half the memory of ARGB_8888.
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * Read the whole stream, up to {@link #MAX_COVER_BYTES}, and close it.
+     *
+     * @param expectedLength length of the stream if known, -1 otherwise
+     */
+    private static byte[] readFully(InputStream inputStream, int expectedLength)
+            throws IOException {
+        try {
+            int initialSize = expectedLength > 0
+                    ? Math.min(expectedLength, MAX_COVER_BYTES) : 16 * 1024;
+            ByteArrayOutputStream output = new ByteArrayOutputStream(initialSize);
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+                if (output.size() > MAX_COVER_BYTES) {
+                    throw new IOException("Cover bigger than " + MAX_COVER_BYTES + " bytes");
+                }
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+
+/**
+ * Shows a single book. What the list already knows about the book (title, authors,
+ * publisher, cover) is passed in the intent and shown right away, the rest (description,
+ * page count, categories, ISBNs) is loaded by the {@link DetailLoader}, usually from memory
+ * because it was prefetched while the book was on screen.
+ */
+
+public class DetailActivity extends AppCompatActivity {
+
+    private static final String EXTRA_VOLUME_ID = "volume_id";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_AUTHORS = "authors";
+    private static final String EXTRA_PUBLISHER = "publisher";
+    private static final String EXTRA_PUBLISHED_DATE = "published_date";
+    private static final String EXTRA_THUMBNAIL_URL = "thumbnail_url";
+
+    private String mVolumeId;
+    private DetailLoader mDetailLoader;
+    private ProgressBar mLoadingIndicator;
+    private TextView mDescriptionTextView;
+    private TextView mDetailsTextView;
+
+    /**
+     * Shows the details once they are loaded.
+     */
+    private final DetailLoader.Callback mCallback = new DetailLoader.Callback() {
+        @Override
+        public void onDetailLoaded(BookDetail detail) {
+            showDetail(detail);
+        }
+    };
+
+    /**
+     * Return the intent opening the given book.
+     */
+    public static Intent newIntent(Context context, Book book) {
+        Intent intent = new Intent(context, DetailActivity.class);
+        intent.putExtra(EXTRA_VOLUME_ID, book.getId());
+        intent.putExtra(EXTRA_TITLE, book.getTitle());
+        intent.putExtra(EXTRA_AUTHORS, book.getAuthorNames());
+        intent.putExtra(EXTRA_PUBLISHER, book.getPublisher());
+        intent.putExtra(EXTRA_PUBLISHED_DATE, book.getPublishedDate());
+        intent.putExtra(EXTRA_THUMBNAIL_URL, book.getThumbnailUrl());
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_detail);
+
+        Intent intent = getIntent();
+        Resources resources = getResources();
+        String notAvailable = getString(R.string.listview_not_available);
+
+        String title = intent.getStringExtra(EXTRA_TITLE);
+        setTitle(title);
+        TextView titleTextView = findViewById(R.id.detail_textview_title);
+        titleTextView.setText(title);
+
+        String authors = intent.getStringExtra(EXTRA_AUTHORS);
+        TextView authorTextView = findViewById(R.id.detail_textview_author);
+        authorTextView.setText(getString(R.string.listview_author_label,
+                authors != null ? authors : notAvailable));
+
+        String publisher = intent.getStringExtra(EXTRA_PUBLISHER);
+        String publisherLabel = getString(R.string.listview_publisher_label,
+                publisher != null ? publisher : notAvailable);
+        String date = intent.getStringExtra(EXTRA_PUBLISHED_DATE);
+        TextView infoTextView = findViewById(R.id.detail_textview_info);
+        infoTextView.setText(date != null
+                ? getString(R.string.listview_info_date, publisherLabel, date)
+                : publisherLabel);
+
+        // The cover is usually in memory already, loaded at the size of the list.
+        ImageView coverImageView = findViewById(R.id.detail_imageview_cover);
+        CoverLoader.getInstance(this).load(coverImageView,
+                intent.getStringExtra(EXTRA_THUMBNAIL_URL),
+                resources.getDimensionPixelSize(R.dimen.width_listview_image),
+                resources.getDimensionPixelSize(R.dimen.height_listview_image));
+
+        mLoadingIndicator = findViewById(R.id.detail_loading_indicator);
+        mDescriptionTextView = findViewById(R.id.detail_textview_description);
+        mDetailsTextView = findViewById(R.id.detail_textview_details);
+
+        mVolumeId = intent.getStringExtra(EXTRA_VOLUME_ID);
+        if (mVolumeId == null) {
+            showDetail(null);
+            return;
+        }
+        mDetailLoader = DetailLoader.getInstance(this);
+        mDetailLoader.load(mVolumeId, mCallback);
+    }
+
+    /**
+     * Show the description and the other details of the book, or a placeholder if they
+     * could not be loaded.
+     */
+    @SuppressWarnings("deprecation")
+    private void showDetail(BookDetail detail) {
+        mLoadingIndicator.setVisibility(View.GONE);
+        if (detail == null || detail.getDescription() == null) {
+            mDescriptionTextView.setText(R.string.detail_no_description);
+        } else {
+            // The description comes with simple HTML tags (paragraphs, bold, italics).
+            mDescriptionTextView.setText(Html.fromHtml(detail.getDescription()));
+        }
+        if (detail == null) {
+            mDetailsTextView.setVisibility(View.GONE);
+            return;
+        }
+
+        ArrayList<String> lines = new ArrayList<>();
+        if (detail.getPageCount() > 0) {
+            lines.add(getString(R.string.detail_pagecount, detail.getPageCount()));
+        }
+        if (!detail.getCategories().isEmpty()) {
+            lines.add(getString(R.string.detail_categories,
+                    TextUtils.join(", ", detail.getCategories())));
+        }
+        for (String isbn : detail.getIsbns()) {
+            lines.add(getString(R.string.detail_isbn, isbn));
+        }
+        mDetailsTextView.setText(TextUtils.join("\n", lines));
+        mDetailsTextView.setVisibility(lines.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        SearchComponents.onActivityStarted();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        SearchComponents.onActivityStopped(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mDetailLoader != null) {
+            mDetailLoader.cancel(mVolumeId, mCallback);
+        }
+    }
+}
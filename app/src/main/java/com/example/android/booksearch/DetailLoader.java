@@ -0,0 +1,243 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the {@link BookDetail}s of the books without blocking the main thread: when a book
+ * is opened, and ahead of time for the rows on screen, so opening one of them is instant.
+ * <p>
+ * Details are fetched on background threads through the {@link BookDetailCache} of the
+ * search client, and the last ones are also kept in memory. Prefetching is bounded: only
+ * a few details are prefetched at a time, and those not started yet are dropped when
+ * other rows are shown or a book is opened.
+ * <p>
+ * All public methods must be called on the main thread.
+ */
+
+public final class DetailLoader {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = DetailLoader.class.getSimpleName();
+
+    /**
+     * Number of details kept in memory.
+     */
+    private static final int MEMORY_CACHE_SIZE = 64;
+
+    /**
+     * Maximum number of details prefetched for the rows on screen.
+     */
+    private static final int MAX_PREFETCHED = 4;
+
+    /**
+     * Number of details loaded at the same time.
+     */
+    private static final int POOL_SIZE = 2;
+
+    /**
+     * Receives the details of a book on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param detail details of the book, or null if they could not be loaded
+         */
+        void onDetailLoaded(BookDetail detail);
+    }
+
+    /**
+     * Single instance shared by the whole app.
+     */
+    private static DetailLoader sInstance;
+
+    private final HttpBookSearchClient mClient;
+    private final LruCache<String, BookDetail> mMemoryCache =
+            new LruCache<>(MEMORY_CACHE_SIZE);
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Requests in progress, by volume id. Opening a book being prefetched waits for the
+     * prefetch instead of starting another request.
+     */
+    private final HashMap<String, Request> mRequests = new HashMap<>();
+
+    /**
+     * The details of a single book being loaded, and the callbacks waiting for them.
+     */
+    private final class Request implements Runnable {
+        final String volumeId;
+        final ArrayList<Callback> callbacks = new ArrayList<>(1);
+        Future<?> future;
+
+        /**
+         * True once a book waits for the details, which are no longer only prefetched.
+         */
+        volatile boolean opened;
+
+        Request(String volumeId) {
+            this.volumeId = volumeId;
+        }
+
+        @Override
+        public void run() {
+            // Prefetches give way to the searches of the user, and to the daily budget.
+            final BookDetail detail = mClient.getDetail(volumeId, new FetchHandle(opened
+                    ? HostRateLimiter.Lane.INTERACTIVE : HostRateLimiter.Lane.PREFETCH));
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLoaded(Request.this, detail);
+                }
+            });
+        }
+    }
+
+    private DetailLoader(Context context) {
+        mClient = SearchComponents.getDetailClient(context);
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "DetailLoader");
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Return the loader shared by the whole app, creating it on first use.
+     */
+    public static DetailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DetailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Load the details of the volume and pass them to the callback, right away if they
+     * are in memory. Details being prefetched for other books are dropped, so these
+     * come first.
+     */
+    public void load(String volumeId, Callback callback) {
+        BookDetail detail = mMemoryCache.get(volumeId);
+        if (detail != null) {
+            callback.onDetailLoaded(detail);
+            return;
+        }
+        cancelPrefetches();
+        Request request = enqueue(volumeId);
+        if (request == null) {
+            callback.onDetailLoaded(null);
+            return;
+        }
+        request.opened = true;
+        request.callbacks.add(callback);
+    }
+
+    /**
+     * Stop passing the details of the volume to the callback, e.g. when the screen
+     * showing them is closed. The details are still loaded into memory.
+     */
+    public void cancel(String volumeId, Callback callback) {
+        Request request = mRequests.get(volumeId);
+        if (request != null) {
+            request.callbacks.remove(callback);
+        }
+    }
+
+    /**
+     * Load the details of the first few volumes into memory ahead of time, e.g. for the
+     * rows on screen, instead of those asked for before and not started yet.
+     */
+    public void prefetch(List<String> volumeIds) {
+        cancelPrefetches();
+        int prefetched = 0;
+        for (String volumeId : volumeIds) {
+            if (prefetched == MAX_PREFETCHED) {
+                break;
+            }
+            if (volumeId != null && mMemoryCache.get(volumeId) == null
+                    && !mRequests.containsKey(volumeId)) {
+                enqueue(volumeId);
+                prefetched++;
+            }
+        }
+    }
+
+    /**
+     * Drop the prefetches which have not started yet.
+     */
+    private void cancelPrefetches() {
+        boolean cancelled = false;
+        Iterator<Request> iterator = mRequests.values().iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            if (request.callbacks.isEmpty() && request.future.cancel(false)) {
+                iterator.remove();
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            mExecutor.purge();
+        }
+    }
+
+    /**
+     * Start loading the details, or return the request already loading them.
+     */
+    private Request enqueue(String volumeId) {
+        Request request = mRequests.get(volumeId);
+        if (request != null) {
+            return request;
+        }
+        request = new Request(volumeId);
+        try {
+            request.future = mExecutor.submit(request);
+        } catch (RejectedExecutionException e) {
+            Log.e(LOG_TAG, "Cannot load details of " + volumeId, e);
+            return null;
+        }
+        mRequests.put(volumeId, request);
+        return request;
+    }
+
+    /**
+     * Keep the loaded details and pass them to the callbacks waiting for them.
+     */
+    private void onLoaded(Request request, BookDetail detail) {
+        if (mRequests.get(request.volumeId) == request) {
+            mRequests.remove(request.volumeId);
+        }
+        if (detail != null) {
+            mMemoryCache.put(request.volumeId, detail);
+        }
+        for (Callback callback : request.callbacks) {
+            callback.onDetailLoaded(detail);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.android.booksearch;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the search objects of the search-core module shared by the whole app,
+ * on first use, with their files in the app directories.
+ */
+
+final class SearchComponents {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = SearchComponents.class.getSimpleName();
+
+    /**
+     * Requests per second the app may send to a single host, and how many of them
+     * may be sent at once.
+     */
+    private static final double REQUESTS_PER_SECOND = 10;
+    private static final int REQUEST_BURST = 10;
+
+    /**
+     * Requests the app may send to the Books API per day: the default quota of a project.
+     */
+    private static final int DAILY_QUOTA = 1000;
+
+    /**
+     * Name of the file (inside the app files dir) holding the requests sent today.
+     */
+    private static final String BUDGET_FILE = "request-budget.bin";
+
+    /**
+     * Attempts of a request, and the bounds (in milliseconds) of the backoff between them.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+
+    /**
+     * How long (in milliseconds) a request runs before it is hedged, until the usual
+     * latency of the requests is known.
+     */
+    private static final long HEDGE_DELAY_MILLIS = 3000;
+
+    /**
+     * Name of the file (inside the app files dir) holding the indexed books.
+     */
+    private static final String INDEX_FILE = "book-index.bin";
+
+    /**
+     * Name of the file (inside the app files dir) the search metrics are written to.
+     */
+    private static final String METRICS_FILE = "search-metrics.json";
+
+    /**
+     * Name of the file (inside the app files dir) holding the {@link SearchSnapshot}.
+     */
+    private static final String SNAPSHOT_FILE = "search-snapshot.bin";
+
+    /**
+     * Snapshots older than this (in milliseconds) are not restored, the user has most
+     * likely moved on from that search.
+     */
+    private static final long SNAPSHOT_MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Name of the file (inside the app files dir) holding the history of the
+     * {@link QueryPredictor}.
+     */
+    private static final String QUERY_HISTORY_FILE = "query-history.bin";
+
+    /**
+     * Number of likely searches prefetched when the app goes to the background, and the
+     * maximum number of bytes downloaded for them.
+     */
+    private static final int PREFETCH_QUERIES = 5;
+    private static final long PREFETCH_BYTE_BUDGET = 512 * 1024;
+
+    private static HttpBookSearchClient sSearchClient;
+
+    /**
+     * Background threads of the requests, which the prefetching runs on as well.
+     */
+    private static ExecutorService sFetchExecutor;
+    private static RequestBudget sRequestBudget;
+    private static BookIndex sBookIndex;
+    private static QueryPredictor sQueryPredictor;
+
+    /**
+     * Suggestions of the search field: those loaded by {@link #loadSuggestions(Context)},
+     * with the recent ones.
+     */
+    private static volatile SuggestionTrie sSuggestions = SuggestionTrie.EMPTY;
+
+    /**
+     * Suggestions built from the indexed books and the search history, once.
+     */
+    private static SuggestionTrie sLoadedSuggestions = SuggestionTrie.EMPTY;
+
+    /**
+     * Searches and books added by {@link #addSuggestions(Context, String, List)} since the
+     * suggestions were loaded.
+     */
+    private static SuggestionTrie.Builder sRecentSuggestions = new SuggestionTrie.Builder();
+
+    /**
+     * True once the suggestions are being loaded.
+     */
+    private static boolean sLoadingSuggestions;
+
+    /**
+     * Handle and task of the prefetching in progress, or null if there is none.
+     */
+    private static FetchHandle sPrefetchHandle;
+    private static Future<?> sPrefetchTask;
+
+    /**
+     * Held while a prefetching runs, so a new one waits for the cancelled one to return
+     * (they write the same files).
+     */
+    private static final Object PREFETCH_LOCK = new Object();
+
+    /**
+     * Number of activities of the app which are started. The app is in the background
+     * when there are none.
+     */
+    private static int sStartedActivities;
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link SearchComponents} object. This class is only meant to hold static methods.
+     */
+    private SearchComponents() {
+    }
+
+    /**
+     * Return the client querying the Books API (or the server set in build.gradle), with
+     * results cached in the app cache dir.
+     */
+    static synchronized BookSearchClient getSearchClient(Context context) {
+        if (sSearchClient == null) {
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            sRequestBudget = new RequestBudget(
+                    new File(context.getApplicationContext().getFilesDir(), BUDGET_FILE),
+                    DAILY_QUOTA);
+            sFetchExecutor = Executors.newCachedThreadPool(newBackgroundThreadFactory("Fetch"));
+            FetchPolicy policy = new FetchPolicy(MAX_ATTEMPTS, INITIAL_BACKOFF_MILLIS,
+                    MAX_BACKOFF_MILLIS, HEDGE_DELAY_MILLIS, sFetchExecutor);
+            // Both are set in build.gradle, so a build can query another server.
+            String apiKey =
+                    BuildConfig.BOOKS_API_KEY.isEmpty() ? null : BuildConfig.BOOKS_API_KEY;
+            sSearchClient = new HttpBookSearchClient(BuildConfig.BOOKS_API_BASE_URL, apiKey,
+                    new BookCache(cacheDir), new BookDetailCache(cacheDir),
+                    new HostRateLimiter(REQUESTS_PER_SECOND, REQUEST_BURST, sRequestBudget),
+                    policy);
+        }
+        return sSearchClient;
+    }
+
+    /**
+     * Return the client fetching the details of the books: the search client, so details
+     * share its rate limit and policy, with the details cached apart from the results.
+     */
+    static synchronized HttpBookSearchClient getDetailClient(Context context) {
+        getSearchClient(context);
+        return sSearchClient;
+    }
+
+    /**
+     * Return the index of every book fetched so far, stored in the app files dir.
+     */
+    static synchronized BookIndex getBookIndex(Context context) {
+        if (sBookIndex == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), INDEX_FILE);
+            Executor executor =
+                    Executors.newSingleThreadExecutor(newBackgroundThreadFactory("BookIndex"));
+            sBookIndex = new BookIndex(file, executor);
+        }
+        return sBookIndex;
+    }
+
+    /**
+     * Return the predictor of the next searches, with its history in the app files dir.
+     * The history is small and read in one shot.
+     */
+    static synchronized QueryPredictor getQueryPredictor(Context context) {
+        if (sQueryPredictor == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(),
+                    QUERY_HISTORY_FILE);
+            sQueryPredictor = new QueryPredictor(file);
+        }
+        return sQueryPredictor;
+    }
+
+    /**
+     * Return the completions suggested while the user types, which may be called from any
+     * thread. They are empty until {@link #loadSuggestions(Context)} has been called.
+     */
+    static SuggestionTrie getSuggestions() {
+        return sSuggestions;
+    }
+
+    /**
+     * Build the suggestions from the indexed books and the search history, in the
+     * background, once the books stored on the device are indexed. Only the first call
+     * builds them, the searches made afterwards are added by
+     * {@link #addSuggestions(Context, String, List)}.
+     */
+    static synchronized void loadSuggestions(Context context) {
+        if (sLoadingSuggestions) {
+            return;
+        }
+        sLoadingSuggestions = true;
+        final BookIndex bookIndex = getBookIndex(context);
+        final QueryPredictor predictor = getQueryPredictor(context);
+        bookIndex.runAfterPending(new Runnable() {
+            @Override
+            public void run() {
+                // What is added from now on may not be in the index yet, it is kept apart.
+                synchronized (SearchComponents.class) {
+                    sRecentSuggestions = new SuggestionTrie.Builder();
+                }
+                SuggestionTrie loaded = new SuggestionTrie.Builder()
+                        .addBooks(bookIndex.getBooks())
+                        .addQueries(predictor.predict(QueryPredictor.MAX_QUERIES,
+                                System.currentTimeMillis()))
+                        .build();
+                synchronized (SearchComponents.class) {
+                    sLoadedSuggestions = loaded;
+                    sSuggestions = loaded.withRecent(sRecentSuggestions.build());
+                }
+                Log.i(LOG_TAG, "Suggestions loaded, " + loaded.size() + " entries");
+            }
+        });
+    }
+
+    /**
+     * Suggest the search, and the books it found, from now on. Only the few suggestions
+     * added since the others were loaded are rebuilt, in the background.
+     *
+     * @param searchPhrase canonical phrase of the search
+     */
+    static synchronized void addSuggestions(Context context, String searchPhrase,
+                                            List<Book> books) {
+        sRecentSuggestions.addQueries(Collections.singletonList(searchPhrase)).addBooks(books);
+        getBookIndex(context).runAfterPending(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SearchComponents.class) {
+                    sSuggestions = sLoadedSuggestions.withRecent(sRecentSuggestions.build());
+                }
+            }
+        });
+    }
+
+    /**
+     * Called by every activity of the app when it is started. Coming back from the
+     * background stops the prefetching, the network is the user's again.
+     */
+    static synchronized void onActivityStarted() {
+        if (sStartedActivities++ == 0) {
+            cancelPrefetch();
+        }
+    }
+
+    /**
+     * Called by every activity of the app when it is stopped. Once the last one is stopped
+     * (and not just recreated), the app is in the background: the prefetching starts and
+     * the metrics are written.
+     * <p>
+     * Going from an activity to another one does not count: the next activity is started
+     * before the previous one is stopped.
+     */
+    static synchronized void onActivityStopped(Activity activity) {
+        if (--sStartedActivities == 0 && !activity.isChangingConfigurations()) {
+            startPrefetch(activity, MainActivity.PAGE_SIZE);
+            dumpMetrics(activity);
+        }
+    }
+
+    /**
+     * Save the search history, then, if the device is charging and on an unmetered network,
+     * fetch the first page of the searches the user is most likely to make next (in the
+     * background), so they are answered from the cache. Called when the app goes to the
+     * background, and stopped by {@link #cancelPrefetch()} when it comes back.
+     *
+     * @param pageSize number of books per page of the user searches
+     */
+    private static synchronized void startPrefetch(Context context, final int pageSize) {
+        cancelPrefetch();
+        final QueryPredictor predictor = getQueryPredictor(context);
+        final boolean prefetch = isIdleConnection(context);
+        final BookSearchClient client = getSearchClient(context);
+        final RequestBudget budget = sRequestBudget;
+        final FetchHandle handle = new FetchHandle(HostRateLimiter.Lane.PREFETCH);
+        sPrefetchHandle = handle;
+        // On the threads of the requests, which run at background priority.
+        sPrefetchTask = sFetchExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (PREFETCH_LOCK) {
+                    predictor.write();
+                    // The budget is written every few requests, write the last ones as well.
+                    budget.write();
+                    if (prefetch && !handle.isCancelled()) {
+                        int prefetched = predictor.prefetch(client, PREFETCH_QUERIES,
+                                pageSize, PREFETCH_BYTE_BUDGET, handle);
+                        Log.i(LOG_TAG, "Prefetched " + prefetched + " likely searches");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the prefetching in progress (if any), so it does not compete with the searches
+     * of the user.
+     */
+    private static synchronized void cancelPrefetch() {
+        if (sPrefetchHandle != null) {
+            // Not interrupted, so the files being written are not left behind half
+            // written: the handle stops the requests.
+            sPrefetchTask.cancel(false);
+            sPrefetchHandle.cancel();
+            sPrefetchHandle = null;
+            sPrefetchTask = null;
+        }
+    }
+
+    /**
+     * Return true if the device is charging and connected to an unmetered network, so
+     * downloads cost the user neither battery nor data.
+     */
+    private static boolean isIdleConnection(Context context) {
+        Context appContext = context.getApplicationContext();
+        Intent battery = appContext.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null || battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) == 0) {
+            return false;
+        }
+        ConnectivityManager connMgr =
+                (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = connMgr.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnected()
+                && !connMgr.isActiveNetworkMetered();
+    }
+
+    /**
+     * Return the search state saved by {@link #saveSnapshot(Context, SearchSnapshot)},
+     * or null if there is none recent enough. The file is small and read in one shot,
+     * so this may be called on the main thread before the first frame.
+     */
+    static SearchSnapshot readSnapshot(Context context) {
+        File file = new File(context.getApplicationContext().getFilesDir(), SNAPSHOT_FILE);
+        SearchSnapshot snapshot = SearchSnapshot.read(file);
+        if (snapshot == null
+                || System.currentTimeMillis() - snapshot.getSavedAt() > SNAPSHOT_MAX_AGE) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Write the search state to the app files dir (in the background).
+     */
+    static void saveSnapshot(Context context, final SearchSnapshot snapshot) {
+        final File file =
+                new File(context.getApplicationContext().getFilesDir(), SNAPSHOT_FILE);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                snapshot.write(file);
+            }
+        }, "SearchSnapshot").start();
+    }
+
+    /**
+     * Return a factory of threads running at background priority, named after the prefix.
+     */
+    private static ThreadFactory newBackgroundThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, namePrefix + " #" + mCount.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * Log a summary of the {@link SearchMetrics} and write all of them as JSON to a file
+     * in the app files dir (in the background), e.g. to be pulled with adb.
+     */
+    private static void dumpMetrics(Context context) {
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        Log.i(LOG_TAG, metrics.toString());
+        final String json = metrics.toJson();
+        final File file = new File(context.getApplicationContext().getFilesDir(), METRICS_FILE);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream output = null;
+                try {
+                    output = new FileOutputStream(file);
+                    output.write(json.getBytes("UTF-8"));
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing metrics to " + file, e);
+                } finally {
+                    if (output != null) {
+                        try {
+                            output.close();
+                        } catch (IOException e) {
+                            Log.e(LOG_TAG, "Error closing metrics file", e);
+                        }
+                    }
+                }
+            }
+        }, "SearchMetrics").start();
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.booksearch;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs book searches with a {@link BookSearchClient} on a small, bounded pool of
+ * background threads. The books found are added to a {@link BookIndex}.
+ * <p>
+ * Every new search starts a new generation (see {@link #startNewSearch()}). Requests of
+ * older generations which are still in flight are cancelled, including their HTTP
+ * connection, and results arriving late for an older generation are dropped. Identical
+ * requests (same cache key) made while one is already running share a single fetch.
+ * <p>
+ * All public methods must be called, and all callbacks are delivered, on the main thread.
+ */
+
+public final class SearchScheduler {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = SearchScheduler.class.getSimpleName();
+
+    /**
+     * Number of requests which may run at the same time.
+     */
+    private static final int POOL_SIZE = 2;
+
+    /**
+     * Number of requests which may wait for a free thread.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * How long (in seconds) an idle thread is kept alive.
+     */
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Receives the books fetched for a request (null if none were found, the request
+     * failed or was cancelled).
+     */
+    public interface Callback {
+        void onBooksLoaded(ArrayList<Book> books);
+    }
+
+    /**
+     * A single fetch, possibly shared by several identical requests.
+     */
+    private static final class Call {
+        final String cacheKey;
+        final FetchHandle handle;
+        final ArrayList<Callback> callbacks = new ArrayList<>();
+        long generation;
+        Future<?> future;
+
+        Call(String cacheKey, long generation, HostRateLimiter.Lane lane) {
+            this.cacheKey = cacheKey;
+            this.generation = generation;
+            handle = new FetchHandle(lane);
+        }
+    }
+
+    private final BookSearchClient mSearchClient;
+    private final BookIndex mBookIndex;
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HashMap<String, Call> mCallsInFlight = new HashMap<>();
+    private long mGeneration;
+
+    public SearchScheduler(BookSearchClient searchClient, BookIndex bookIndex) {
+        mSearchClient = searchClient;
+        mBookIndex = bookIndex;
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "BookSearch #" + mCount.incrementAndGet());
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start a new search generation. Requests made from now on supersede every request
+     * of the previous generations.
+     *
+     * @return the generation token of the new search.
+     */
+    public long startNewSearch() {
+        return ++mGeneration;
+    }
+
+    /**
+     * Return true if the given generation token belongs to the current search.
+     */
+    public boolean isCurrent(long generation) {
+        return generation == mGeneration;
+    }
+
+    /**
+     * Fetch a page of books for the search phrase in the current generation. If the same
+     * page is already in flight, the callback is attached to it instead.
+     */
+    public void fetch(final String searchPhrase, final int startIndex, final int maxResults,
+                      Callback callback) {
+        final String cacheKey = BookCache.createKey(
+                QueryCanonicalizer.canonicalize(searchPhrase), startIndex, maxResults);
+        Call call = mCallsInFlight.get(cacheKey);
+        if (call != null && !call.handle.isCancelled()) {
+            // Coalesce with the identical request, and keep it alive for this generation.
+            call.generation = mGeneration;
+            call.callbacks.add(callback);
+            cancelSuperseded();
+            return;
+        }
+
+        // The first page answers the user, the next ones can wait for it.
+        final Call newCall = new Call(cacheKey, mGeneration, startIndex == 0
+                ? HostRateLimiter.Lane.INTERACTIVE : HostRateLimiter.Lane.PAGING);
+        newCall.callbacks.add(callback);
+        mCallsInFlight.put(cacheKey, newCall);
+        cancelSuperseded();
+        try {
+            newCall.future = mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    final ArrayList<Book> books = mSearchClient.search(
+                            searchPhrase, startIndex, maxResults, newCall.handle);
+                    if (books != null) {
+                        // Keep every fetched book searchable when offline.
+                        mBookIndex.addAll(books);
+                    }
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver(newCall, books);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(LOG_TAG, "Too many pending searches, dropping " + cacheKey, e);
+            mCallsInFlight.remove(cacheKey);
+            deliverLater(newCall);
+        }
+    }
+
+    /**
+     * Cancel every request in flight, e.g. when the activity is destroyed.
+     */
+    public void cancelAll() {
+        mGeneration++;
+        cancelSuperseded();
+    }
+
+    /**
+     * Cancel every request in flight and stop the background threads.
+     */
+    public void shutdown() {
+        cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Cancel the requests of older generations and remove them from the queue.
+     */
+    private void cancelSuperseded() {
+        boolean cancelled = false;
+        Iterator<Call> iterator = mCallsInFlight.values().iterator();
+        while (iterator.hasNext()) {
+            Call call = iterator.next();
+            if (call.generation < mGeneration) {
+                iterator.remove();
+                call.handle.cancel();
+                if (call.future != null) {
+                    call.future.cancel(false);
+                }
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            mExecutor.purge();
+        }
+    }
+
+    /**
+     * Hand the books over to the callbacks of the call, unless it has been superseded.
+     */
+    private void deliver(Call call, ArrayList<Book> books) {
+        if (mCallsInFlight.get(call.cacheKey) == call) {
+            mCallsInFlight.remove(call.cacheKey);
+        }
+        if (call.handle.isCancelled() || call.generation != mGeneration) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < call.callbacks.size(); i++) {
+            // Every callback gets its own list, adapters modify the list they are given.
+            ArrayList<Book> result = books;
+            if (books != null && i > 0) {
+                result = new ArrayList<>(books);
+            }
+            call.callbacks.get(i).onBooksLoaded(result);
+        }
+        SearchMetrics.getInstance().record(
+                SearchMetrics.Phase.DELIVER, System.nanoTime() - start);
+    }
+
+    /**
+     * Report a request which could not be scheduled as failed.
+     */
+    private void deliverLater(final Call call) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver(call, null);
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.booksearch;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapter of the drop-down of the search field, listing the completions of the text typed
+ * found in the {@link SuggestionTrie} of {@link SearchComponents#getSuggestions()}.
+ * The search field runs the {@link Filter} on its own background thread after every
+ * keystroke, and only the last results are published.
+ */
+
+class SuggestionAdapter extends BaseAdapter implements Filterable {
+
+    /**
+     * Maximum number of suggestions shown in the drop-down.
+     */
+    private static final int MAX_SUGGESTIONS = 6;
+
+    private final LayoutInflater mInflater;
+    private List<String> mSuggestions = new ArrayList<>();
+
+    SuggestionAdapter(Context context) {
+        mInflater = LayoutInflater.from(context);
+    }
+
+    @Override
+    public int getCount() {
+        return mSuggestions.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return mSuggestions.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView textView = (TextView) convertView;
+        if (textView == null) {
+            textView = (TextView) mInflater.inflate(R.layout.item_suggestion, parent, false);
+        }
+        textView.setText(getItem(position));
+        return textView;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence constraint) {
+                List<String> suggestions = constraint == null ? new ArrayList<String>()
+                        : SearchComponents.getSuggestions()
+                                .complete(constraint.toString(), MAX_SUGGESTIONS);
+                FilterResults results = new FilterResults();
+                results.values = suggestions;
+                results.count = suggestions.size();
+                return results;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(CharSequence constraint, FilterResults results) {
+                mSuggestions = (List<String>) results.values;
+                notifyDataSetChanged();
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.booksearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of creating {@link Book}s and of the values the list displays, for a page of
+ * 40 books. The raw values are copied out of a parsed response first, so only the
+ * model code is measured.
+ */
+@State(Scope.Benchmark)
+public class BookBenchmark {
+
+    private String[] mTitles;
+    private List<String>[] mAuthors;
+    private String[] mPublishers;
+    private String[] mPublishedDates;
+    private String[] mThumbnailUrls;
+    private ArrayList<Book> mBooks;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        mBooks = BookStreamParser.parse(
+                new ByteArrayInputStream(Responses.load("volumes_40.json")));
+        int count = mBooks.size();
+        mTitles = new String[count];
+        mAuthors = new List[count];
+        mPublishers = new String[count];
+        mPublishedDates = new String[count];
+        mThumbnailUrls = new String[count];
+        for (int i = 0; i < count; i++) {
+            Book book = mBooks.get(i);
+            // Copies, so every construction interns strings it has not seen before.
+            mTitles[i] = new String(book.getTitle());
+            mAuthors[i] = copyAll(book.getAuthors());
+            mPublishers[i] = book.getPublisher() != null
+                    ? new String(book.getPublisher()) : null;
+            mPublishedDates[i] = book.getPublishedDate();
+            mThumbnailUrls[i] = book.getThumbnailUrl();
+        }
+    }
+
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        for (int i = 0; i < mTitles.length; i++) {
+            blackhole.consume(new Book(mTitles[i], mAuthors[i], mPublishers[i],
+                    mPublishedDates[i], mThumbnailUrls[i]));
+        }
+    }
+
+    @Benchmark
+    public void authorNames(Blackhole blackhole) {
+        for (Book book : mBooks) {
+            blackhole.consume(book.getAuthorNames());
+        }
+    }
+
+    private static List<String> copyAll(List<String> strings) {
+        ArrayList<String> copies = new ArrayList<>(strings.size());
+        for (String string : strings) {
+            copies.add(new String(string));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.android.booksearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Cost of a local search in a {@link BookIndex} of 30000 books: a typical phrase, and a
+ * single letter matching a word of most books.
+ */
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+
+    private static final String[] WORDS = {"java", "android", "python", "kotlin", "design",
+            "patterns", "clean", "code", "algorithms", "data", "network", "systems"};
+
+    private File mFile;
+    private BookIndex mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("book-index", ".bin");
+        mFile.delete();
+        // Index on the calling thread, so every book is there before measuring.
+        mIndex = new BookIndex(mFile, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        ArrayList<Book> books = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            List<String> authors = Collections.singletonList("Author " + (i % 997));
+            books.add(new Book(WORDS[i % 12] + ' ' + WORDS[(i / 12) % 12] + " volume " + i,
+                    authors, "Publisher " + (i % 31)));
+        }
+        mIndex.addAll(books);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public List<Book> searchPhrase() {
+        return mIndex.search("java co", 20);
+    }
+
+    @Benchmark
+    public List<Book> searchLetter() {
+        return mIndex.search("a", 20);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.android.booksearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Cost of turning a Books API response into {@link Book}s: the streaming parser used by
+ * the app, and the DOM parser ({@link QueryUtils#extractBooksFromJson(String)}) it
+ * replaced. Both start from the raw bytes, as they arrive from the network.
+ */
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"volumes_1.json", "volumes_10.json", "volumes_40.json",
+            "volumes_40_descriptions.json"})
+    public String response;
+
+    private byte[] mBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBytes = Responses.load(response);
+    }
+
+    @Benchmark
+    public ArrayList<Book> streamParser() throws IOException {
+        return BookStreamParser.parse(new ByteArrayInputStream(mBytes));
+    }
+
+    @Benchmark
+    public ArrayList<Book> domParser() {
+        return QueryUtils.extractBooksFromJson(new String(mBytes, UTF_8));
+    }
+}
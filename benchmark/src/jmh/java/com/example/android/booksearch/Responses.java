@@ -0,0 +1,48 @@
+package com.example.android.booksearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Books API responses used by the benchmarks, read from the classpath.
+ * <p>
+ * The responses are full (not partial) "books#volumes" documents:
+ * <ul>
+ * <li>volumes_1.json, volumes_10.json, volumes_40.json - 1, 10 and 40 items with short
+ * descriptions, like a first page on a small screen up to the largest page</li>
+ * <li>volumes_40_descriptions.json - 40 items with descriptions of a few kilobytes each,
+ * which the app skips but still has to scan</li>
+ * </ul>
+ */
+
+final class Responses {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Responses}
+     * object. This class is only meant to hold static methods.
+     */
+    private Responses() {
+    }
+
+    /**
+     * Return the bytes of the named response.
+     */
+    static byte[] load(String name) throws IOException {
+        InputStream inputStream = Responses.class.getResourceAsStream("/responses/" + name);
+        if (inputStream == null) {
+            throw new IOException("Missing response " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.android.booksearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Cost of reading back a {@link SearchSnapshot} of 500 books, which the app does before
+ * drawing its first frame.
+ */
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        ArrayList<Book> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            books.add(new Book("v" + i, "Book " + i,
+                    Collections.singletonList("Author " + i % 7),
+                    i % 2 == 0 ? "Publisher" : null, "2017", "https://example.com/" + i));
+        }
+        mFile = File.createTempFile("search-snapshot", ".bin");
+        if (!new SearchSnapshot("java", books, 500, true, 0, 0, 1L).write(mFile)) {
+            throw new IOException("Cannot write " + mFile);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public SearchSnapshot read() {
+        return SearchSnapshot.read(mFile);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.android.booksearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs thousands of concurrent searches through {@link HttpBookSearchClient}, against a
+ * {@link MockBooksApi} started in the same process (or any server given with --url), and
+ * reports the throughput and latency percentiles, so regressions of the networking code
+ * can be caught offline:
+ * <pre>
+ *   ./gradlew :loadtest:run -PloadArgs="--searches 5000 --concurrency 64 --latency 20"
+ * </pre>
+ * With --serve PORT, it only runs the mock, to point a debug build of the app at it.
+ * Run it with --help to see every option. The exit code is 1 if the p99 is above
+ * --max-p99 or more searches failed than --max-failure-rate allows, 2 for invalid options.
+ */
+
+public final class LoadDriver {
+
+    private static final String USAGE = "Options:\n"
+            + "  --searches N          searches to run (default 2000)\n"
+            + "  --warmup N            searches run first and not measured (default 200)\n"
+            + "  --concurrency N       searches running at once (default 32)\n"
+            + "  --page-size N         books requested per search (default 20)\n"
+            + "  --no-policy           single attempt per search, no retries nor hedging\n"
+            + "  --url URL             query this server instead of a local mock\n"
+            + "  --serve PORT          only run the mock on this port, e.g. for the app\n"
+            + "  --latency MS          mock latency (default 20)\n"
+            + "  --jitter MS           mock random extra latency (default 10)\n"
+            + "  --slow-rate R         share of very slow mock responses (default 0)\n"
+            + "  --slow-latency MS     latency of the slow responses (default 3000)\n"
+            + "  --error-rate R        share of 503 mock responses (default 0)\n"
+            + "  --throttle-rate R     share of 429 mock responses (default 0)\n"
+            + "  --description BYTES   description size of the mock volumes (default 0)\n"
+            + "  --recorded FILE...    serve these recorded responses instead\n"
+            + "  --max-p99 MS          fail if the p99 latency is higher\n"
+            + "  --max-failure-rate R  fail if a larger share of searches fails (default 1)\n";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link LoadDriver}
+     * object. This class is only meant to hold the main method.
+     */
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int searches = 2000;
+        int warmup = 200;
+        int concurrency = 32;
+        int pageSize = 20;
+        boolean usePolicy = true;
+        String url = null;
+        long maxP99Millis = Long.MAX_VALUE;
+        double maxFailureRate = 1;
+        MockBooksApi mock = new MockBooksApi();
+        long latency = 20;
+        long jitter = 10;
+        double slowRate = 0;
+        long slowLatency = 3000;
+        int servePort = -1;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if ("--help".equals(option)) {
+                    System.out.print(USAGE);
+                    return;
+                }
+                if ("--no-policy".equals(option)) {
+                    usePolicy = false;
+                    continue;
+                }
+                if ("--recorded".equals(option)) {
+                    while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        mock.addRecordedResponse(readFile(new File(args[++i])));
+                    }
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--searches":
+                        searches = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(value);
+                        break;
+                    case "--page-size":
+                        pageSize = Integer.parseInt(value);
+                        break;
+                    case "--url":
+                        url = value;
+                        break;
+                    case "--serve":
+                        servePort = Integer.parseInt(value);
+                        break;
+                    case "--latency":
+                        latency = Long.parseLong(value);
+                        break;
+                    case "--jitter":
+                        jitter = Long.parseLong(value);
+                        break;
+                    case "--slow-rate":
+                        slowRate = Double.parseDouble(value);
+                        break;
+                    case "--slow-latency":
+                        slowLatency = Long.parseLong(value);
+                        break;
+                    case "--error-rate":
+                        mock.setErrorRate(Double.parseDouble(value));
+                        break;
+                    case "--throttle-rate":
+                        mock.setThrottleRate(Double.parseDouble(value));
+                        break;
+                    case "--description":
+                        mock.setDescriptionBytes(Integer.parseInt(value));
+                        break;
+                    case "--max-p99":
+                        maxP99Millis = Long.parseLong(value);
+                        break;
+                    case "--max-failure-rate":
+                        maxFailureRate = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (searches < 1 || warmup < 0 || concurrency < 1 || pageSize < 1) {
+                throw new IllegalArgumentException("Counts must be positive");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        // Errors are expected under load, count them instead of logging each one.
+        Logger.getLogger("").setLevel(Level.OFF);
+
+        if (url == null) {
+            mock.setLatency(latency, jitter).setSlowResponses(slowRate, slowLatency);
+            if (servePort >= 0) {
+                // Serve until killed, the app reaches it through 10.0.2.2 on the emulator.
+                System.out.println("Serving " + mock.start(servePort));
+                return;
+            }
+            url = mock.start();
+        }
+        ExecutorService hedgeExecutor = Executors.newCachedThreadPool(daemonThreads("Hedge"));
+        FetchPolicy policy = usePolicy
+                ? new FetchPolicy(3, 100, 1000, 1000, hedgeExecutor) : null;
+        BookSearchClient client = new HttpBookSearchClient(url, null, null, null, policy);
+
+        System.out.printf(Locale.US, "Searching %s, %d searches, %d at once, %s%n", url,
+                searches, concurrency, usePolicy ? "with retries and hedging" : "single attempt");
+        run(client, "warmup", warmup, concurrency, pageSize, new Histogram());
+        SearchMetrics.getInstance().reset();
+        long serverRequestsBefore = mock.getRequestCount();
+        long serverBytesBefore = mock.getBytesSent();
+
+        Histogram latencies = new Histogram();
+        long start = System.nanoTime();
+        int failures = run(client, "search", searches, concurrency, pageSize, latencies);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.US, "Throughput: %.1f searches/s (%d in %.2f s)%n",
+                searches / seconds, searches, seconds);
+        System.out.printf(Locale.US,
+                "Latency: mean %.1f ms, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, "
+                        + "p99.9 %.1f ms, max %.1f ms%n",
+                latencies.getMean() / 1000, latencies.getPercentile(50) / 1000f,
+                latencies.getPercentile(90) / 1000f, latencies.getPercentile(99) / 1000f,
+                latencies.getPercentile(99.9) / 1000f, latencies.getMax() / 1000f);
+        double failureRate = (double) failures / searches;
+        System.out.printf(Locale.US, "Failed: %d (%.2f%%)%n", failures, failureRate * 100);
+        if (mock.getRequestCount() > 0) {
+            System.out.printf(Locale.US, "Mock server: %d requests, %d KB sent%n",
+                    mock.getRequestCount() - serverRequestsBefore,
+                    (mock.getBytesSent() - serverBytesBefore) / 1024);
+        }
+        System.out.println(SearchMetrics.getInstance());
+
+        mock.stop();
+        hedgeExecutor.shutdownNow();
+        long p99Millis = TimeUnit.MICROSECONDS.toMillis(latencies.getPercentile(99));
+        if (p99Millis > maxP99Millis || failureRate > maxFailureRate) {
+            System.out.println("FAILED: p99 " + p99Millis + " ms (max " + maxP99Millis
+                    + " ms), failure rate " + failureRate + " (max " + maxFailureRate + ")");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the searches on the given number of threads, each search with its own phrase.
+     *
+     * @param latencies receives the duration (in microseconds) of every search
+     * @return the number of searches which found no books.
+     */
+    private static int run(final BookSearchClient client, final String prefix, int searches,
+                           int concurrency, final int pageSize, final Histogram latencies)
+            throws Exception {
+        final AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(concurrency, daemonThreads("Search"));
+        ArrayList<Future<?>> futures = new ArrayList<>(searches);
+        for (int i = 0; i < searches; i++) {
+            final String searchPhrase = prefix + "+" + i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    ArrayList<Book> books =
+                            client.search(searchPhrase, 0, pageSize, new FetchHandle());
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    if (books == null || books.isEmpty()) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return failures.get();
+    }
+
+    private static ThreadFactory daemonThreads(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + " #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return bytes;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.android.booksearch;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the volumes collection of the Books API, to test and load-test the
+ * search client without the network.
+ * <p>
+ * Every page of every search phrase gets the same synthetic volumes each time (or one of
+ * the recorded responses added with {@link #addRecordedResponse(byte[])}), and every volume
+ * id ("/volumes/{id}") the same synthetic details, compressed when
+ * the client accepts gzip and with an ETag, so revalidations get "304 Not Modified".
+ * The latency, the share of failed or throttled requests and the size of the volumes are
+ * configurable, and must be set before {@link #start()}.
+ */
+
+public final class MockBooksApi {
+
+    /**
+     * Path of the volumes collection, as on the real server.
+     */
+    public static final String PATH = "/books/v1/volumes";
+
+    private long mLatencyMillis;
+    private long mJitterMillis;
+    private double mSlowRate;
+    private long mSlowLatencyMillis;
+    private double mErrorRate;
+    private double mThrottleRate;
+    private int mTotalItems = 200;
+    private int mDescriptionBytes;
+    private final List<byte[]> mRecordedResponses = new ArrayList<>();
+
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    /**
+     * Delay every response by the latency plus a random part up to the jitter
+     * (in milliseconds).
+     */
+    public MockBooksApi setLatency(long latencyMillis, long jitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Delay the given share of the responses (between 0 and 1) by the given time instead,
+     * to simulate the tail latency of a mobile network.
+     */
+    public MockBooksApi setSlowResponses(double rate, long latencyMillis) {
+        mSlowRate = rate;
+        mSlowLatencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * Answer the given share of the requests (between 0 and 1) with "503 Service Unavailable".
+     */
+    public MockBooksApi setErrorRate(double rate) {
+        mErrorRate = rate;
+        return this;
+    }
+
+    /**
+     * Answer the given share of the requests (between 0 and 1) with "429 Too Many Requests"
+     * and a Retry-After of one second.
+     */
+    public MockBooksApi setThrottleRate(double rate) {
+        mThrottleRate = rate;
+        return this;
+    }
+
+    /**
+     * Set the number of volumes found for every search phrase, pages past them are empty.
+     */
+    public MockBooksApi setTotalItems(int totalItems) {
+        mTotalItems = totalItems;
+        return this;
+    }
+
+    /**
+     * Add a description of the given size to every synthetic volume, to make the responses
+     * as large as unfiltered ones.
+     */
+    public MockBooksApi setDescriptionBytes(int descriptionBytes) {
+        mDescriptionBytes = descriptionBytes;
+        return this;
+    }
+
+    /**
+     * Serve recorded responses (e.g. saved from the real server) instead of synthetic ones.
+     * Each page of each search phrase always gets the same one.
+     */
+    public MockBooksApi addRecordedResponse(byte[] json) {
+        mRecordedResponses.add(json);
+        return this;
+    }
+
+    /**
+     * Start serving on a free local port.
+     *
+     * @return the URL of the volumes collection, to give to {@link HttpBookSearchClient}.
+     */
+    public String start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Start serving on the given local port (0 for any free one).
+     *
+     * @return the URL of the volumes collection, to give to {@link HttpBookSearchClient}.
+     */
+    public String start(int port) throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // One thread per request being answered, as they mostly sleep.
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * Stop the server, aborting the responses in progress.
+     */
+    public void stop() {
+        if (mServer != null) {
+            mServer.stop(0);
+            mExecutor.shutdownNow();
+            mServer = null;
+        }
+    }
+
+    /**
+     * Return the number of requests received so far.
+     */
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * Return the number of body bytes sent so far (compressed, if they were).
+     */
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        mRequests.incrementAndGet();
+        Random random = new Random();
+        boolean slow = random.nextDouble() < mSlowRate;
+        long delay = slow ? mSlowLatencyMillis
+                : mLatencyMillis + (long) (random.nextDouble() * mJitterMillis);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // The server is stopping.
+                return;
+            }
+        }
+
+        double failure = random.nextDouble();
+        if (failure < mErrorRate) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+        if (failure < mErrorRate + mThrottleRate) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(429, -1);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.length() > PATH.length() + 1) {
+            body = createVolume(path.substring(PATH.length() + 1));
+        } else {
+            HashMap<String, String> parameters =
+                    parseQuery(exchange.getRequestURI().getRawQuery());
+            String searchPhrase = parameters.containsKey("q") ? parameters.get("q") : "";
+            int startIndex = parseInt(parameters.get("startIndex"), 0);
+            int maxResults = parseInt(parameters.get("maxResults"), 10);
+            body = mRecordedResponses.isEmpty()
+                    ? createResponse(searchPhrase, startIndex, maxResults)
+                    : mRecordedResponses.get(Math.abs(
+                    (searchPhrase + startIndex).hashCode() % mRecordedResponses.size()));
+        }
+
+        String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(body);
+        output.close();
+        mBytesSent.addAndGet(body.length);
+    }
+
+    /**
+     * Return the synthetic volumes of a page of results, the same for every request.
+     */
+    private byte[] createResponse(String searchPhrase, int startIndex, int maxResults)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, "UTF-8"));
+        writer.beginObject();
+        writer.name("kind").value("books#volumes");
+        writer.name("totalItems").value(mTotalItems);
+        int end = Math.min(startIndex + maxResults, mTotalItems);
+        if (startIndex < end) {
+            writer.name("items").beginArray();
+            for (int i = startIndex; i < end; i++) {
+                writeVolume(writer, searchPhrase, i);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Return the synthetic details of a single volume, the same for every request.
+     */
+    private byte[] createVolume(String id) throws IOException {
+        Random random = new Random(id.hashCode());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, "UTF-8"));
+        writer.beginObject();
+        writer.name("kind").value("books#volume");
+        writer.name("id").value(id);
+        writer.name("volumeInfo").beginObject();
+        StringBuilder description = new StringBuilder("<p>");
+        for (int i = 0, count = 5 + random.nextInt(20); i < count; i++) {
+            description.append("Lorem ipsum dolor sit amet ").append(random.nextInt())
+                    .append(". ");
+        }
+        writer.name("description").value(description.append("</p>").toString());
+        writer.name("pageCount").value(50 + random.nextInt(900));
+        writer.name("categories").beginArray().value("Category " + random.nextInt(20))
+                .endArray();
+        writer.name("industryIdentifiers").beginArray();
+        writer.beginObject().name("type").value("ISBN_13")
+                .name("identifier").value("978" + (1000000000L + random.nextInt(999999999)))
+                .endObject();
+        writer.endArray();
+        writer.endObject();
+        writer.endObject();
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private void writeVolume(JsonWriter writer, String searchPhrase, int index)
+            throws IOException {
+        Random random = new Random((searchPhrase + index).hashCode());
+        writer.beginObject();
+        writer.name("id").value(Integer.toHexString(searchPhrase.hashCode()) + "-" + index);
+        writer.name("volumeInfo").beginObject();
+        writer.name("title").value("Volume " + index + " about " + searchPhrase);
+        writer.name("authors").beginArray();
+        for (int i = 0, count = 1 + random.nextInt(3); i < count; i++) {
+            writer.value("Author " + random.nextInt(1000));
+        }
+        writer.endArray();
+        writer.name("publisher").value("Publisher " + random.nextInt(50));
+        writer.name("publishedDate").value(String.valueOf(1950 + random.nextInt(70)));
+        if (mDescriptionBytes > 0) {
+            StringBuilder description = new StringBuilder(mDescriptionBytes);
+            while (description.length() < mDescriptionBytes) {
+                description.append("Lorem ipsum dolor sit amet ").append(random.nextInt())
+                        .append(". ");
+            }
+            description.setLength(mDescriptionBytes);
+            writer.name("description").value(description.toString());
+        }
+        writer.name("imageLinks").beginObject();
+        writer.name("thumbnail").value("http://books.google.com/books/content?id="
+                + index + "&printsec=frontcover&img=1&zoom=1");
+        writer.endObject();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    private static HashMap<String, String> parseQuery(String query)
+            throws UnsupportedEncodingException {
+        HashMap<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(parameter.substring(0, equals),
+                        URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
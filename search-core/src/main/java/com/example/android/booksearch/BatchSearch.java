@@ -0,0 +1,183 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many searches at once (e.g. a list of author names or ISBNs imported from
+ * a reading list) and merges their results.
+ * <p>
+ * Up to {@code parallelism} searches run at the same time. Results are handed to the
+ * {@link Listener} as soon as each search completes, without the books already
+ * delivered for an earlier search of the batch: books are de-duplicated by volume id
+ * (or by title, authors and publisher for books without one).
+ * <p>
+ * To limit the rate of requests sent to the server, give the {@link BookSearchClient}
+ * a {@link HostRateLimiter}.
+ */
+
+public final class BatchSearch {
+
+    /**
+     * Receives the results of a batch. Calls are made on the threads of the batch, one at
+     * a time, and stop once the batch has been cancelled.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a single search of the batch completed.
+         *
+         * @param searchPhrase the search phrase
+         * @param newBooks     books found which no earlier search of the batch returned
+         */
+        void onSearchCompleted(String searchPhrase, List<Book> newBooks);
+
+        /**
+         * Called once every search of the batch completed.
+         *
+         * @param books every book found by the batch, in the order it was delivered
+         */
+        void onBatchCompleted(List<Book> books);
+    }
+
+    /**
+     * Handle of a running batch.
+     */
+    public static final class Batch {
+        private final ArrayList<FetchHandle> mHandles = new ArrayList<>();
+        private final HashSet<String> mSeenKeys = new HashSet<>();
+        private final ArrayList<Book> mBooks = new ArrayList<>();
+        private ExecutorService mExecutor;
+        private int mRemaining;
+        private boolean mCancelled;
+
+        /**
+         * Cancel every search of the batch which has not completed yet.
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+            }
+            for (FetchHandle handle : mHandles) {
+                handle.cancel();
+            }
+            mExecutor.shutdownNow();
+        }
+
+        public synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    private final BookSearchClient mSearchClient;
+    private final int mParallelism;
+
+    /**
+     * Create a new {@link BatchSearch}.
+     *
+     * @param searchClient client making the searches
+     * @param parallelism  maximum number of searches running at the same time
+     */
+    public BatchSearch(BookSearchClient searchClient, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+        }
+        mSearchClient = searchClient;
+        mParallelism = parallelism;
+    }
+
+    /**
+     * Start searching for the first page of results of every search phrase.
+     * Equivalent phrases (see {@link QueryCanonicalizer}) are searched only once, and
+     * reported to the listener by their canonical phrase.
+     *
+     * @param phrases    search phrases, words separated by '+' or spaces
+     * @param maxResults maximum number of books returned by each search
+     * @param listener   receives the results as they arrive
+     * @return the handle to cancel the batch with.
+     */
+    public Batch start(List<String> phrases, final int maxResults,
+                       final Listener listener) {
+        LinkedHashSet<String> canonicalPhrases = new LinkedHashSet<>();
+        for (String phrase : phrases) {
+            String canonicalPhrase = QueryCanonicalizer.canonicalize(phrase);
+            if (!canonicalPhrase.isEmpty()) {
+                canonicalPhrases.add(canonicalPhrase);
+            }
+        }
+        List<String> searchPhrases = new ArrayList<>(canonicalPhrases);
+
+        final Batch batch = new Batch();
+        batch.mRemaining = searchPhrases.size();
+        final AtomicInteger threadCount = new AtomicInteger();
+        batch.mExecutor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(mParallelism, searchPhrases.size())),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "BatchSearch #" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        if (searchPhrases.isEmpty()) {
+            batch.mExecutor.shutdown();
+            listener.onBatchCompleted(Collections.<Book>emptyList());
+            return batch;
+        }
+        for (final String searchPhrase : searchPhrases) {
+            final FetchHandle handle = new FetchHandle(HostRateLimiter.Lane.BATCH);
+            batch.mHandles.add(handle);
+            batch.mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ArrayList<Book> books = null;
+                    if (!handle.isCancelled()) {
+                        books = mSearchClient.search(searchPhrase, 0, maxResults, handle);
+                    }
+                    deliver(batch, searchPhrase, books, listener);
+                }
+            });
+        }
+        // Threads end once the queued searches are done.
+        batch.mExecutor.shutdown();
+        return batch;
+    }
+
+    /**
+     * Merge the books of a completed search into the batch and hand the new ones over.
+     */
+    private static void deliver(Batch batch, String searchPhrase, List<Book> books,
+                                Listener listener) {
+        synchronized (batch) {
+            if (batch.mCancelled) {
+                return;
+            }
+            ArrayList<Book> newBooks = new ArrayList<>();
+            if (books != null) {
+                for (Book book : books) {
+                    if (batch.mSeenKeys.add(book.getKey())) {
+                        newBooks.add(book);
+                    }
+                }
+            }
+            batch.mBooks.addAll(newBooks);
+            listener.onSearchCompleted(searchPhrase, newBooks);
+            if (--batch.mRemaining == 0) {
+                listener.onBatchCompleted(Collections.unmodifiableList(batch.mBooks));
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.android.booksearch;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Book} object contains information related to a single book.
+ * Contains information about Title, Authors, Date of publication, Publisher and cover,
+ * and the id of the Books API volume it comes from.
+ * <p>
+ * Books are immutable and store only the raw values received from the Books API. Author
+ * and publisher names repeat a lot across results, so they are interned and shared by all
+ * books. Display labels (like "Author(s): ...") are built by the view layer.
+ */
+
+public final class Book {
+
+    /**
+     * Shared empty list of authors.
+     */
+    private static final String[] NO_AUTHORS = new String[0];
+
+    /**
+     * Id of the Books API volume, or null if not available
+     */
+    private final String mId;
+
+    /**
+     * String value of the book title
+     */
+    private final String mTitle;
+
+    /**
+     * Names of the book authors (interned)
+     */
+    private final String[] mAuthors;
+
+    /**
+     * String value of the book publisher (interned), or null if not available
+     */
+    private final String mPublisher;
+
+    /**
+     * String value of the book publication date, or null if not available
+     */
+    private final String mPublishedDate;
+
+    /**
+     * Publication date as a sortable number (see {@link #getPublishedDateKey()})
+     */
+    private final int mPublishedDateKey;
+
+    /**
+     * URL of the book cover thumbnail, or null if not available
+     */
+    private final String mThumbnailUrl;
+
+    /**
+     * Create a new {@link Book} object with initial values of title, authors and publisher.
+     *
+     * @param title     is the title of the book
+     * @param authors   are the authors of the book (may be empty)
+     * @param publisher is the publisher of the book (may be null)
+     */
+    public Book(String title, List<String> authors, String publisher) {
+        this(title, authors, publisher, null, null);
+    }
+
+    /**
+     * Create a new {@link Book} object with initial values of title, authors, publisher,
+     * publication date and cover thumbnail.
+     *
+     * @param title         is the title of the book
+     * @param authors       are the authors of the book (may be empty)
+     * @param publisher     is the publisher of the book (may be null)
+     * @param publishedDate is the publication date of the book (may be null)
+     * @param thumbnailUrl  is the URL of the book cover thumbnail (may be null)
+     */
+    public Book(String title, List<String> authors, String publisher, String publishedDate,
+                String thumbnailUrl) {
+        this(null, title, authors, publisher, publishedDate, thumbnailUrl);
+    }
+
+    /**
+     * Create a new {@link Book} object for a Books API volume.
+     *
+     * @param id            is the id of the volume (may be null)
+     * @param title         is the title of the book
+     * @param authors       are the authors of the book (may be empty)
+     * @param publisher     is the publisher of the book (may be null)
+     * @param publishedDate is the publication date of the book (may be null)
+     * @param thumbnailUrl  is the URL of the book cover thumbnail (may be null)
+     */
+    public Book(String id, String title, List<String> authors, String publisher,
+                String publishedDate, String thumbnailUrl) {
+        mId = id;
+        mTitle = title;
+        mAuthors = internAll(authors);
+        mPublisher = publisher != null ? publisher.intern() : null;
+        mPublishedDate = publishedDate;
+        mPublishedDateKey = parseDateKey(publishedDate);
+        mThumbnailUrl = thumbnailUrl;
+    }
+
+
+    /**
+     * Get the id of the Books API volume, which identifies the same book across searches.
+     *
+     * @return volume id, or null if not available.
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Get the key identifying the same book across searches: its volume id, or else its
+     * title, authors and publisher, so a copy with a different cover or date still
+     * counts as the same book.
+     *
+     * @return identity key of the book.
+     */
+    public String getKey() {
+        if (mId != null) {
+            return mId;
+        }
+        return mTitle + '\n' + getAuthorNames() + '\n' + mPublisher;
+    }
+
+    /**
+     * Get the string value representing Title of the Book.
+     *
+     * @return title of the book.
+     */
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * Get the names of the Book authors.
+     *
+     * @return unmodifiable list of authors, empty if not available.
+     */
+    public List<String> getAuthors() {
+        return Collections.unmodifiableList(Arrays.asList(mAuthors));
+    }
+
+    /**
+     * Get the names of the Book authors joined with commas.
+     *
+     * @return authors of the book, or null if not available.
+     */
+    public String getAuthorNames() {
+        if (mAuthors.length == 0) {
+            return null;
+        }
+        if (mAuthors.length == 1) {
+            return mAuthors[0];
+        }
+        StringBuilder stringBuilder = new StringBuilder(mAuthors[0]);
+        for (int i = 1; i < mAuthors.length; i++) {
+            stringBuilder.append(", ").append(mAuthors[i]);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Get the string value representing Publisher of the Book.
+     *
+     * @return publisher of the book, or null if not available.
+     */
+    public String getPublisher() {
+        return mPublisher;
+    }
+
+    /**
+     * Get the string value of the Book class representing date of publication.
+     *
+     * @return publication date, or null if not available.
+     */
+    public String getPublishedDate() {
+        return mPublishedDate;
+    }
+
+    /**
+     * Get the publication date as a number ordered like the dates: yyyymmdd, with 00 for
+     * the month or day when the date is only a year ("1997") or a month ("1997-06").
+     * Parsed once when the book is created, so books can be sorted by date cheaply.
+     *
+     * @return publication date key, or 0 if the date is not available or not understood.
+     */
+    public int getPublishedDateKey() {
+        return mPublishedDateKey;
+    }
+
+    /**
+     * Get the URL of the Book cover thumbnail.
+     *
+     * @return thumbnail URL, or null if the book has no cover.
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    /**
+     * Parse a Books API date ("1997", "1997-06" or "1997-06-26", possibly followed by
+     * a time) into a yyyymmdd number, or 0 if it does not start with a year.
+     */
+    static int parseDateKey(String date) {
+        if (date == null) {
+            return 0;
+        }
+        int year = parseDigits(date, 0, 4);
+        if (year <= 0) {
+            return 0;
+        }
+        int month = 0;
+        int day = 0;
+        if (date.length() >= 7 && date.charAt(4) == '-') {
+            month = parseDigits(date, 5, 2);
+            if (month < 1 || month > 12) {
+                month = 0;
+            } else if (date.length() >= 10 && date.charAt(7) == '-') {
+                day = parseDigits(date, 8, 2);
+                if (day < 1 || day > 31) {
+                    day = 0;
+                }
+            }
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Return the number written with the given count of digits at the start index,
+     * or -1 if they are not all digits.
+     */
+    private static int parseDigits(String text, int start, int count) {
+        if (text.length() < start + count) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Return interned copies of the names, sharing the empty array for no names.
+     */
+    private static String[] internAll(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return NO_AUTHORS;
+        }
+        String[] interned = new String[names.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = names.get(i).intern();
+        }
+        return interned;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Book book = (Book) o;
+        return equal(mId, book.mId)
+                && equal(mTitle, book.mTitle)
+                && Arrays.equals(mAuthors, book.mAuthors)
+                && equal(mPublisher, book.mPublisher)
+                && equal(mPublishedDate, book.mPublishedDate)
+                && equal(mThumbnailUrl, book.mThumbnailUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mId != null ? mId.hashCode() : 0;
+        result = 31 * result + (mTitle != null ? mTitle.hashCode() : 0);
+        result = 31 * result + Arrays.hashCode(mAuthors);
+        result = 31 * result + (mPublisher != null ? mPublisher.hashCode() : 0);
+        result = 31 * result + (mPublishedDate != null ? mPublishedDate.hashCode() : 0);
+        result = 31 * result + (mThumbnailUrl != null ? mThumbnailUrl.hashCode() : 0);
+        return result;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "Book{" +
+                "mId='" + mId + '\'' +
+                ", mTitle='" + mTitle + '\'' +
+                ", mAuthors=" + Arrays.toString(mAuthors) +
+                ", mPublisher='" + mPublisher + '\'' +
+                ", mPublishedDate='" + mPublishedDate + '\'' +
+                ", mThumbnailUrl='" + mThumbnailUrl + '\'' +
+                '}';
+    }
+
+}
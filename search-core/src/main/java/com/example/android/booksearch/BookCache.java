@@ -0,0 +1,270 @@
+package com.example.android.booksearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-tier cache of parsed search results placed in front of the Books API.
+ * <p>
+ * The first tier is an in-memory LRU of {@link ArrayList<Book>} results, the second one
+ * is a cache directory holding the same results in a compact binary form.
+ * Both tiers are bounded by (estimated) bytes rather than by number of entries.
+ * <p>
+ * Entries younger than {@link #TIME_TO_LIVE} are served without touching the network.
+ * Older entries are kept and revalidated by {@link QueryUtils} with the ETag they were
+ * stored with.
+ */
+
+public final class BookCache {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(BookCache.class.getSimpleName());
+
+    /**
+     * How long (in milliseconds) a stored result is considered fresh.
+     */
+    static final long TIME_TO_LIVE = 10 * 60 * 1000;
+
+    /**
+     * Maximum estimated size (in bytes) of results kept in memory.
+     */
+    private static final int MEMORY_CACHE_BYTES = 1024 * 1024;
+
+    /**
+     * Maximum size (in bytes) of the files kept in the disk cache directory.
+     */
+    private static final long DISK_CACHE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Name of the disk cache directory (inside the app cache dir).
+     */
+    private static final String DISK_CACHE_DIR = "book-results";
+
+    /**
+     * Version of the disk file format. Files with a different version are ignored.
+     */
+    private static final int DISK_FORMAT_VERSION = 4;
+
+    /**
+     * A cached result together with the data needed to revalidate it.
+     */
+    static final class Entry {
+
+        final ArrayList<Book> books;
+        final String etag;
+        final long storedAt;
+        final int estimatedBytes;
+
+        Entry(ArrayList<Book> books, String etag, long storedAt) {
+            this.books = books;
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.estimatedBytes = estimateBytes();
+        }
+
+        /**
+         * Return true if the entry can be served without asking the server.
+         */
+        boolean isFresh(long now) {
+            return now - storedAt < TIME_TO_LIVE;
+        }
+
+        /**
+         * Estimated heap size of the entry, used to bound the memory tier. Author and
+         * publisher names are shared between books, so they are not counted.
+         */
+        private int estimateBytes() {
+            int bytes = 64;
+            for (Book book : books) {
+                bytes += 64 + 2 * (length(book.getTitle()) + length(book.getPublishedDate())
+                        + length(book.getThumbnailUrl()));
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Memory tier, in access order: the least recently used entry comes first.
+     */
+    private final LinkedHashMap<String, Entry> mMemoryCache =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private int mMemoryBytes;
+    private final DiskCacheDirectory mDiskCache;
+
+    private int mMemoryHits;
+    private int mDiskHits;
+    private int mMisses;
+    private int mRevalidations;
+
+    /**
+     * Create a cache storing its files in a directory inside the given one.
+     *
+     * @param cacheDir directory for cache files, e.g. the app cache dir
+     */
+    public BookCache(File cacheDir) {
+        mDiskCache = new DiskCacheDirectory(new File(cacheDir, DISK_CACHE_DIR), DISK_CACHE_BYTES);
+    }
+
+    /**
+     * Create the cache key for the given (already normalized) search phrase and page.
+     */
+    public static String createKey(String searchPhrase, int startIndex, int maxResults) {
+        return searchPhrase + "&startIndex=" + startIndex + "&maxResults=" + maxResults;
+    }
+
+    /**
+     * Return the entry stored for the key (fresh or not), looking into memory first
+     * and then on disk, or null if there is none.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = mMemoryCache.get(key);
+        if (entry != null) {
+            mMemoryHits++;
+            return entry;
+        }
+        entry = readFromDisk(key);
+        if (entry != null) {
+            mDiskHits++;
+            putInMemory(key, entry);
+            return entry;
+        }
+        mMisses++;
+        return null;
+    }
+
+    /**
+     * Store the books received from the server under the given key in both tiers.
+     */
+    synchronized void put(String key, ArrayList<Book> books, String etag) {
+        Entry entry = new Entry(new ArrayList<>(books), etag, System.currentTimeMillis());
+        putInMemory(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    /**
+     * Mark a stale entry as fresh again after the server answered "304 Not Modified".
+     */
+    synchronized Entry revalidated(String key, Entry entry) {
+        mRevalidations++;
+        Entry refreshed = new Entry(entry.books, entry.etag, System.currentTimeMillis());
+        putInMemory(key, refreshed);
+        writeToDisk(key, refreshed);
+        return refreshed;
+    }
+
+    public synchronized int getMemoryHitCount() {
+        return mMemoryHits;
+    }
+
+    public synchronized int getDiskHitCount() {
+        return mDiskHits;
+    }
+
+    public synchronized int getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized int getRevalidationCount() {
+        return mRevalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BookCache{" +
+                "memoryHits=" + mMemoryHits +
+                ", diskHits=" + mDiskHits +
+                ", misses=" + mMisses +
+                ", revalidations=" + mRevalidations +
+                ", memoryBytes=" + mMemoryBytes +
+                ", diskBytes=" + mDiskCache.size() +
+                '}';
+    }
+
+    /**
+     * Store the entry in memory and evict the least recently used entries until the
+     * memory tier fits in its byte limit again.
+     */
+    private void putInMemory(String key, Entry entry) {
+        Entry previous = mMemoryCache.put(key, entry);
+        mMemoryBytes += entry.estimatedBytes;
+        if (previous != null) {
+            mMemoryBytes -= previous.estimatedBytes;
+        }
+        Iterator<Entry> iterator = mMemoryCache.values().iterator();
+        while (mMemoryBytes > MEMORY_CACHE_BYTES && iterator.hasNext()) {
+            mMemoryBytes -= iterator.next().estimatedBytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Read the entry for the key from disk. Returns null if there is no readable entry
+     * (or the file belongs to a different key with the same hash).
+     */
+    private Entry readFromDisk(String key) {
+        File file = mDiskCache.fileFor(key, ".bin");
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != DISK_FORMAT_VERSION || !key.equals(input.readUTF())) {
+                return null;
+            }
+            long storedAt = input.readLong();
+            String etag = BookSerializer.readNullableString(input);
+            ArrayList<Book> books = BookSerializer.readBooks(input);
+            mDiskCache.touch(file);
+            return new Entry(books, etag, storedAt);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading cached results from " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Write the entry to disk and trim the directory back under its byte limit.
+     */
+    private void writeToDisk(String key, Entry entry) {
+        File file = mDiskCache.fileFor(key, ".bin");
+        File tempFile = mDiskCache.tempFileFor(file);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(DISK_FORMAT_VERSION);
+            output.writeUTF(key);
+            output.writeLong(entry.storedAt);
+            BookSerializer.writeNullableString(output, entry.etag);
+            BookSerializer.writeBooks(output, entry.books);
+            output.close();
+            output = null;
+            mDiskCache.commit(tempFile, file);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem writing cached results to " + file, e);
+            tempFile.delete();
+        } finally {
+            FileUtils.closeQuietly(output);
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
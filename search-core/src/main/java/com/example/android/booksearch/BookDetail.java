@@ -0,0 +1,149 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link BookDetail} object contains the information of a Books API volume which is only
+ * shown when the book is opened: description, number of pages, categories and ISBNs.
+ * <p>
+ * Details are fetched one volume at a time ("/volumes/{id}"), after the {@link Book} they
+ * belong to, so the pages of search results stay small. Details are immutable.
+ */
+
+public final class BookDetail {
+
+    /**
+     * Id of the Books API volume
+     */
+    private final String mId;
+
+    /**
+     * Description of the book (simple HTML), or null if not available
+     */
+    private final String mDescription;
+
+    /**
+     * Number of pages, or 0 if not available
+     */
+    private final int mPageCount;
+
+    /**
+     * Categories of the book, e.g. "Fiction / Fantasy / Epic"
+     */
+    private final List<String> mCategories;
+
+    /**
+     * ISBNs of the book, the ISBN-13 first
+     */
+    private final List<String> mIsbns;
+
+    /**
+     * Create a new {@link BookDetail} object.
+     *
+     * @param id          is the id of the volume
+     * @param description is the description of the book (may be null)
+     * @param pageCount   is the number of pages (0 if not available)
+     * @param categories  are the categories of the book (may be empty)
+     * @param isbns       are the ISBNs of the book (may be empty)
+     */
+    public BookDetail(String id, String description, int pageCount, List<String> categories,
+                      List<String> isbns) {
+        mId = id;
+        mDescription = description;
+        mPageCount = pageCount;
+        mCategories = copyOf(categories);
+        mIsbns = copyOf(isbns);
+    }
+
+    /**
+     * Get the id of the Books API volume.
+     *
+     * @return volume id.
+     */
+    public String getId() {
+        return mId;
+    }
+
+    /**
+     * Get the description of the book, which may contain simple HTML tags.
+     *
+     * @return description, or null if not available.
+     */
+    public String getDescription() {
+        return mDescription;
+    }
+
+    /**
+     * Get the number of pages of the book.
+     *
+     * @return page count, or 0 if not available.
+     */
+    public int getPageCount() {
+        return mPageCount;
+    }
+
+    /**
+     * Get the categories of the book.
+     *
+     * @return unmodifiable list of categories, empty if not available.
+     */
+    public List<String> getCategories() {
+        return mCategories;
+    }
+
+    /**
+     * Get the ISBNs of the book, the ISBN-13 before the ISBN-10.
+     *
+     * @return unmodifiable list of ISBNs, empty if not available.
+     */
+    public List<String> getIsbns() {
+        return mIsbns;
+    }
+
+    private static List<String> copyOf(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BookDetail detail = (BookDetail) o;
+        return mPageCount == detail.mPageCount
+                && (mId == null ? detail.mId == null : mId.equals(detail.mId))
+                && (mDescription == null ? detail.mDescription == null
+                : mDescription.equals(detail.mDescription))
+                && mCategories.equals(detail.mCategories)
+                && mIsbns.equals(detail.mIsbns);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mId != null ? mId.hashCode() : 0;
+        result = 31 * result + (mDescription != null ? mDescription.hashCode() : 0);
+        result = 31 * result + mPageCount;
+        result = 31 * result + mCategories.hashCode();
+        result = 31 * result + mIsbns.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BookDetail{" +
+                "mId='" + mId + '\'' +
+                ", mDescription='" + mDescription + '\'' +
+                ", mPageCount=" + mPageCount +
+                ", mCategories=" + mCategories +
+                ", mIsbns=" + mIsbns +
+                '}';
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.android.booksearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-tier cache of {@link BookDetail}s by volume id, kept apart from the
+ * {@link BookCache} of search results: details are larger, requested one at a time and
+ * change much less often than the results of a search.
+ * <p>
+ * Like the {@link BookCache}, it keeps an in-memory LRU and a cache directory, both bounded
+ * by bytes. Entries younger than {@link #TIME_TO_LIVE} are served without touching the
+ * network, older ones are revalidated with their ETag.
+ */
+
+public final class BookDetailCache {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(BookDetailCache.class.getSimpleName());
+
+    /**
+     * How long (in milliseconds) stored details are considered fresh.
+     */
+    static final long TIME_TO_LIVE = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * Maximum estimated size (in bytes) of details kept in memory.
+     */
+    private static final int MEMORY_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * Maximum size (in bytes) of the files kept in the disk cache directory.
+     */
+    private static final long DISK_CACHE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Name of the disk cache directory (inside the app cache dir).
+     */
+    private static final String DISK_CACHE_DIR = "book-details";
+
+    /**
+     * Version of the disk file format. Files with a different version are ignored.
+     */
+    private static final int DISK_FORMAT_VERSION = 1;
+
+    /**
+     * Cached details together with the data needed to revalidate them.
+     */
+    static final class Entry {
+
+        final BookDetail detail;
+        final String etag;
+        final long storedAt;
+        final int estimatedBytes;
+
+        Entry(BookDetail detail, String etag, long storedAt) {
+            this.detail = detail;
+            this.etag = etag;
+            this.storedAt = storedAt;
+            this.estimatedBytes = estimateBytes();
+        }
+
+        /**
+         * Return true if the entry can be served without asking the server.
+         */
+        boolean isFresh(long now) {
+            return now - storedAt < TIME_TO_LIVE;
+        }
+
+        /**
+         * Estimated heap size of the entry, used to bound the memory tier.
+         */
+        private int estimateBytes() {
+            int chars = length(detail.getDescription());
+            for (String category : detail.getCategories()) {
+                chars += category.length();
+            }
+            for (String isbn : detail.getIsbns()) {
+                chars += isbn.length();
+            }
+            return 128 + 2 * chars;
+        }
+    }
+
+    /**
+     * Memory tier, in access order: the least recently used entry comes first.
+     */
+    private final LinkedHashMap<String, Entry> mMemoryCache =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private int mMemoryBytes;
+    private final DiskCacheDirectory mDiskCache;
+
+    /**
+     * Create a cache storing its files in a directory inside the given one.
+     *
+     * @param cacheDir directory for cache files, e.g. the app cache dir
+     */
+    public BookDetailCache(File cacheDir) {
+        mDiskCache = new DiskCacheDirectory(new File(cacheDir, DISK_CACHE_DIR), DISK_CACHE_BYTES);
+    }
+
+    /**
+     * Return the entry stored for the volume id (fresh or not), looking into memory first
+     * and then on disk, or null if there is none.
+     */
+    synchronized Entry get(String volumeId) {
+        Entry entry = mMemoryCache.get(volumeId);
+        if (entry != null) {
+            return entry;
+        }
+        entry = readFromDisk(volumeId);
+        if (entry != null) {
+            putInMemory(volumeId, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Store the details received from the server in both tiers.
+     */
+    synchronized void put(BookDetail detail, String etag) {
+        Entry entry = new Entry(detail, etag, System.currentTimeMillis());
+        putInMemory(detail.getId(), entry);
+        writeToDisk(detail.getId(), entry);
+    }
+
+    /**
+     * Mark a stale entry as fresh again after the server answered "304 Not Modified".
+     */
+    synchronized Entry revalidated(Entry entry) {
+        Entry refreshed = new Entry(entry.detail, entry.etag, System.currentTimeMillis());
+        putInMemory(entry.detail.getId(), refreshed);
+        writeToDisk(entry.detail.getId(), refreshed);
+        return refreshed;
+    }
+
+    /**
+     * Store the entry in memory and evict the least recently used entries until the
+     * memory tier fits in its byte limit again.
+     */
+    private void putInMemory(String volumeId, Entry entry) {
+        Entry previous = mMemoryCache.put(volumeId, entry);
+        mMemoryBytes += entry.estimatedBytes;
+        if (previous != null) {
+            mMemoryBytes -= previous.estimatedBytes;
+        }
+        Iterator<Entry> iterator = mMemoryCache.values().iterator();
+        while (mMemoryBytes > MEMORY_CACHE_BYTES && iterator.hasNext()) {
+            mMemoryBytes -= iterator.next().estimatedBytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Read the entry for the volume id from disk. Returns null if there is no readable
+     * entry (or the file belongs to another volume with the same hash).
+     */
+    private Entry readFromDisk(String volumeId) {
+        File file = mDiskCache.fileFor(volumeId, ".bin");
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != DISK_FORMAT_VERSION || !volumeId.equals(input.readUTF())) {
+                return null;
+            }
+            long storedAt = input.readLong();
+            String etag = BookSerializer.readNullableString(input);
+            String description = BookSerializer.readNullableString(input);
+            int pageCount = input.readInt();
+            List<String> categories = readStrings(input);
+            List<String> isbns = readStrings(input);
+            mDiskCache.touch(file);
+            return new Entry(new BookDetail(volumeId, description, pageCount, categories,
+                    isbns), etag, storedAt);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading cached details from " + file, e);
+            return null;
+        } finally {
+            FileUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Write the entry to disk and trim the directory back under its byte limit.
+     */
+    private void writeToDisk(String volumeId, Entry entry) {
+        File file = mDiskCache.fileFor(volumeId, ".bin");
+        File tempFile = mDiskCache.tempFileFor(file);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(DISK_FORMAT_VERSION);
+            output.writeUTF(volumeId);
+            output.writeLong(entry.storedAt);
+            BookSerializer.writeNullableString(output, entry.etag);
+            BookSerializer.writeNullableString(output, entry.detail.getDescription());
+            output.writeInt(entry.detail.getPageCount());
+            writeStrings(output, entry.detail.getCategories());
+            writeStrings(output, entry.detail.getIsbns());
+            output.close();
+            output = null;
+            mDiskCache.commit(tempFile, file);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem writing cached details to " + file, e);
+            tempFile.delete();
+        } finally {
+            FileUtils.closeQuietly(output);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings)
+            throws IOException {
+        output.writeByte(strings.size());
+        for (String string : strings) {
+            output.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream input) throws IOException {
+        int count = input.readUnsignedByte();
+        ArrayList<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(input.readUTF());
+        }
+        return strings;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
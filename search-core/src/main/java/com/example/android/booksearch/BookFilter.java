@@ -0,0 +1,85 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods to narrow down an already fetched list of {@link Book}s locally,
+ * without asking the Books API.
+ */
+
+public final class BookFilter {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link BookFilter}
+     * object. This class is only meant to hold static methods.
+     */
+    private BookFilter() {
+    }
+
+    /**
+     * Return the books matching every word of the search phrase. A word matches when it
+     * is the beginning of a word of the title, author or publisher of the book.
+     *
+     * @param books        books to filter
+     * @param searchPhrase search phrase with words separated by '+' or spaces, see
+     *                     {@link QueryCanonicalizer}
+     */
+    public static ArrayList<Book> filter(List<Book> books, String searchPhrase) {
+        String[] queryWords = QueryCanonicalizer.matchWords(searchPhrase);
+        ArrayList<Book> result = new ArrayList<>();
+        for (Book book : books) {
+            if (matches(book, queryWords)) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return true if every query word starts one of the words describing the book.
+     */
+    private static boolean matches(Book book, String[] queryWords) {
+        StringBuilder text = new StringBuilder(book.getTitle());
+        for (String author : book.getAuthors()) {
+            text.append(' ').append(author);
+        }
+        if (book.getPublisher() != null) {
+            text.append(' ').append(book.getPublisher());
+        }
+        String[] bookWords = splitWords(QueryCanonicalizer.fold(text.toString()));
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String bookWord : bookWords) {
+                if (bookWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the text into words made of letters and digits (and their combining marks).
+     */
+    static String[] splitWords(String text) {
+        ArrayList<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            boolean isWordChar = QueryCanonicalizer.isWordChar(codePoint);
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return words.toArray(new String[words.size()]);
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.android.booksearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Full-text index of every book fetched so far, kept on the device, which answers
+ * searches without the network (e.g. when offline, or while the user is still typing).
+ * <p>
+ * Title, authors and publisher of the books are split into words, each word pointing to
+ * the books it appears in. The words are kept sorted, so every word starting with a query
+ * word is found with a single range lookup. Matching books are ranked with BM25, a title
+ * match counting more than an author or publisher one.
+ * <p>
+ * Books are appended to a file as they arrive, and the index is
+ * updated with them in place. On start the file is read back on a background thread.
+ * Searches made before it is read return the books indexed so far.
+ */
+
+public final class BookIndex {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(BookIndex.class.getSimpleName());
+
+    /**
+     * Version of the file format. A file with a different version is started over.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Maximum number of books indexed. Books arriving later are not indexed.
+     */
+    static final int MAX_BOOKS = 50000;
+
+    /**
+     * BM25 term frequency saturation.
+     */
+    private static final float K1 = 1.2f;
+
+    /**
+     * BM25 document length normalization.
+     */
+    private static final float B = 0.75f;
+
+    /**
+     * Weight of a word in the title, compared with a word of the authors or publisher.
+     */
+    private static final int TITLE_WEIGHT = 2;
+
+    /**
+     * Score multiplier of a word which only starts with the query word.
+     */
+    private static final float PREFIX_MATCH_WEIGHT = 0.5f;
+
+    /**
+     * Books containing a single word, in the order they were indexed, with the (weighted)
+     * number of times the word appears in each of them.
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] frequencies = new int[2];
+        int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = grow(docs);
+                frequencies = grow(frequencies);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    /**
+     * Indexed books, a book's position being its document number.
+     */
+    private final ArrayList<Book> mBooks = new ArrayList<>();
+
+    /**
+     * Document numbers by {@link Book#getKey()}, so a book is indexed only once.
+     */
+    private final HashMap<String, Integer> mDocsByKey = new HashMap<>();
+
+    private final TreeMap<String, Postings> mPostings = new TreeMap<>();
+    private int[] mDocLengths = new int[64];
+    private long mTotalLength;
+
+    /**
+     * Work arrays of {@link #search(String, int)}, indexed by document number and kept
+     * between searches.
+     */
+    private float[] mScores = new float[0];
+    private int[] mMatchedWords = new int[0];
+    private float[] mWordScores = new float[0];
+    private int[] mTouched = new int[0];
+
+    /**
+     * Create an index stored in the given file. The file is read, and books are
+     * appended to it, on the given executor, which should run one task at a time.
+     */
+    public BookIndex(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Index the books (skipping those already indexed) and store them in the file.
+     * Returns right away, the work is done in the background.
+     */
+    public void addAll(List<Book> books) {
+        final ArrayList<Book> copy = new ArrayList<>(books);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<Book> added = new ArrayList<>();
+                for (Book book : copy) {
+                    if (index(book)) {
+                        added.add(book);
+                    }
+                }
+                append(added);
+            }
+        });
+    }
+
+    /**
+     * Return the indexed books matching every word of the search phrase, best first.
+     * A query word matches a word of the title, authors or publisher which starts with it.
+     *
+     * @param searchPhrase search phrase with words separated by '+' or spaces, see
+     *                     {@link QueryCanonicalizer}
+     * @param maxResults   maximum number of books returned
+     */
+    public synchronized ArrayList<Book> search(String searchPhrase, int maxResults) {
+        String[] queryWords = QueryCanonicalizer.matchWords(searchPhrase);
+        int docCount = mBooks.size();
+        if (queryWords.length == 0 || docCount == 0 || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+
+        float averageLength = (float) mTotalLength / docCount;
+        if (mScores.length < docCount) {
+            mScores = new float[mDocLengths.length];
+            mMatchedWords = new int[mDocLengths.length];
+            mWordScores = new float[mDocLengths.length];
+            mTouched = new int[mDocLengths.length];
+        } else {
+            Arrays.fill(mScores, 0, docCount, 0f);
+            Arrays.fill(mMatchedWords, 0, docCount, 0);
+        }
+        float[] scores = mScores;
+        int[] matchedWords = mMatchedWords;
+        float[] wordScores = mWordScores;
+        int[] touched = mTouched;
+
+        for (int q = 0; q < queryWords.length; q++) {
+            String queryWord = queryWords[q];
+            int touchedCount = 0;
+            Map<String, Postings> matches =
+                    mPostings.subMap(queryWord, queryWord + Character.MAX_VALUE);
+
+            // The rarity of the query word is that of all the words it starts, so a rare
+            // longer word does not outrank the exact word.
+            int matchingDocs = 0;
+            for (Postings postings : matches.values()) {
+                matchingDocs += postings.size;
+            }
+            matchingDocs = Math.min(matchingDocs, docCount);
+            float idf = (float) Math.log(
+                    1 + (docCount - matchingDocs + 0.5) / (matchingDocs + 0.5));
+
+            for (Map.Entry<String, Postings> match : matches.entrySet()) {
+                Postings postings = match.getValue();
+                float weight = match.getKey().equals(queryWord) ? 1f : PREFIX_MATCH_WEIGHT;
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    int frequency = postings.frequencies[i];
+                    float norm = K1 * (1 - B + B * mDocLengths[doc] / averageLength);
+                    float score = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+                    if (wordScores[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    // A book matching several words with the same prefix counts once.
+                    if (score > wordScores[doc]) {
+                        wordScores[doc] = score;
+                    }
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (matchedWords[doc] == q) {
+                    matchedWords[doc]++;
+                    scores[doc] += wordScores[doc];
+                }
+                wordScores[doc] = 0;
+            }
+        }
+
+        // Keep the best books in order, going from the most recently fetched one, so it
+        // comes first among books with equal scores.
+        int[] best = new int[maxResults];
+        int bestCount = 0;
+        for (int doc = docCount - 1; doc >= 0; doc--) {
+            if (matchedWords[doc] != queryWords.length) {
+                continue;
+            }
+            float score = scores[doc];
+            if (bestCount == best.length && score <= scores[best[bestCount - 1]]) {
+                continue;
+            }
+            int i = bestCount < best.length ? bestCount++ : bestCount - 1;
+            while (i > 0 && scores[best[i - 1]] < score) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = doc;
+        }
+
+        ArrayList<Book> result = new ArrayList<>(bestCount);
+        for (int i = 0; i < bestCount; i++) {
+            result.add(mBooks.get(best[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of indexed books.
+     */
+    public synchronized int size() {
+        return mBooks.size();
+    }
+
+    /**
+     * Run the task on the executor of the index, once the file has been read and the books
+     * added before have been indexed, e.g. to go through {@link #getBooks()}.
+     */
+    public void runAfterPending(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    /**
+     * Return a copy of the indexed books, in the order they were indexed.
+     */
+    public synchronized ArrayList<Book> getBooks() {
+        return new ArrayList<>(mBooks);
+    }
+
+    /**
+     * Add the book to the in-memory index. Returns false if it was already indexed
+     * or the index is full.
+     */
+    private synchronized boolean index(Book book) {
+        String key = book.getKey();
+        if (mDocsByKey.containsKey(key) || mBooks.size() >= MAX_BOOKS) {
+            return false;
+        }
+        int doc = mBooks.size();
+        mBooks.add(book);
+        mDocsByKey.put(key, doc);
+
+        HashMap<String, Integer> frequencies = new HashMap<>();
+        int length = countWords(book.getTitle(), TITLE_WEIGHT, frequencies);
+        for (String author : book.getAuthors()) {
+            length += countWords(author, 1, frequencies);
+        }
+        length += countWords(book.getPublisher(), 1, frequencies);
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings postings = mPostings.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                mPostings.put(entry.getKey(), postings);
+            }
+            postings.add(doc, entry.getValue());
+        }
+        if (doc == mDocLengths.length) {
+            mDocLengths = grow(mDocLengths);
+        }
+        mDocLengths[doc] = length;
+        mTotalLength += length;
+        return true;
+    }
+
+    /**
+     * Add the words of the text, each counted with the given weight, to the frequencies.
+     *
+     * @return the weighted number of words in the text.
+     */
+    private static int countWords(String text, int weight, HashMap<String, Integer> frequencies) {
+        if (text == null) {
+            return 0;
+        }
+        String[] words = BookFilter.splitWords(QueryCanonicalizer.fold(text));
+        for (String word : words) {
+            Integer frequency = frequencies.get(word);
+            frequencies.put(word, frequency == null ? weight : frequency + weight);
+        }
+        return words.length * weight;
+    }
+
+    /**
+     * Index the books stored in the file. A record cut short (e.g. by the process being
+     * killed while writing it) is dropped from the file.
+     */
+    private void load() {
+        if (!mFile.isFile()) {
+            return;
+        }
+        DataInputStream input = null;
+        long validLength = 0;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (input.readInt() != FORMAT_VERSION) {
+                FileUtils.closeQuietly(input);
+                input = null;
+                mFile.delete();
+                return;
+            }
+            validLength = 4;
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                byte[] record = new byte[length];
+                input.readFully(record);
+                index(BookSerializer.readBook(
+                        new DataInputStream(new ByteArrayInputStream(record))));
+                validLength += 4 + length;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the book index, dropping its end", e);
+            truncate(validLength);
+        } finally {
+            FileUtils.closeQuietly(input);
+        }
+        LOGGER.fine("Loaded " + size() + " books");
+    }
+
+    /**
+     * Append the books to the file, as one record each.
+     */
+    private void append(List<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        boolean isNew = !mFile.isFile() || mFile.length() == 0;
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(mFile, true)));
+            if (isNew) {
+                output.writeInt(FORMAT_VERSION);
+            }
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            for (Book book : books) {
+                record.reset();
+                BookSerializer.writeBook(new DataOutputStream(record), book);
+                output.writeInt(record.size());
+                record.writeTo(output);
+            }
+            output.close();
+            output = null;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem writing to the book index " + mFile, e);
+        } finally {
+            FileUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Cut the file to the given length, or delete it if it would hold no book.
+     */
+    private void truncate(long length) {
+        if (length <= 4) {
+            mFile.delete();
+            return;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.setLength(length);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem truncating the book index, deleting it", e);
+            mFile.delete();
+        } finally {
+            FileUtils.closeQuietly(file);
+        }
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+
+/**
+ * Searches for books, e.g. with the Books API ({@link HttpBookSearchClient}).
+ * <p>
+ * Searches block until the results are available, so they must not be made on the
+ * main thread of an app.
+ */
+
+public interface BookSearchClient {
+
+    /**
+     * Return a page of books matching the search phrase.
+     *
+     * @param searchPhrase normalized search phrase, words separated by '+'
+     * @param startIndex   index of the first book of the page
+     * @param maxResults   maximum number of books in the page
+     * @param handle       handle used to cancel the search from another thread, or null
+     * @return the books found (an empty list if there are none), or null if the search
+     * failed or it has been cancelled.
+     */
+    ArrayList<Book> search(String searchPhrase, int startIndex, int maxResults,
+                           FetchHandle handle);
+}
@@ -0,0 +1,92 @@
+package com.example.android.booksearch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods to write {@link Book}s in a compact binary form and read them back,
+ * used by the caches stored on disk.
+ */
+
+final class BookSerializer {
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link BookSerializer} object. This class is only meant to hold static methods.
+     */
+    private BookSerializer() {
+    }
+
+    /**
+     * Write the list of books to the output.
+     */
+    static void writeBooks(DataOutputStream output, List<Book> books) throws IOException {
+        output.writeInt(books.size());
+        for (Book book : books) {
+            writeBook(output, book);
+        }
+    }
+
+    /**
+     * Read a list of books written by {@link #writeBooks(DataOutputStream, List)}.
+     */
+    static ArrayList<Book> readBooks(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of books: " + count);
+        }
+        ArrayList<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(readBook(input));
+        }
+        return books;
+    }
+
+    /**
+     * Write a single book to the output.
+     */
+    static void writeBook(DataOutputStream output, Book book) throws IOException {
+        writeNullableString(output, book.getId());
+        output.writeUTF(book.getTitle());
+        List<String> authors = book.getAuthors();
+        output.writeByte(authors.size());
+        for (String author : authors) {
+            output.writeUTF(author);
+        }
+        writeNullableString(output, book.getPublisher());
+        writeNullableString(output, book.getPublishedDate());
+        writeNullableString(output, book.getThumbnailUrl());
+    }
+
+    /**
+     * Read a single book written by {@link #writeBook(DataOutputStream, Book)}.
+     */
+    static Book readBook(DataInputStream input) throws IOException {
+        String id = readNullableString(input);
+        String title = input.readUTF();
+        int authorCount = input.readUnsignedByte();
+        ArrayList<String> authors = new ArrayList<>(authorCount);
+        for (int i = 0; i < authorCount; i++) {
+            authors.add(input.readUTF());
+        }
+        String publisher = readNullableString(input);
+        String publishedDate = readNullableString(input);
+        String thumbnailUrl = readNullableString(input);
+        return new Book(id, title, authors, publisher, publishedDate, thumbnailUrl);
+    }
+
+    static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    static void writeNullableString(DataOutputStream output, String value)
+            throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+}
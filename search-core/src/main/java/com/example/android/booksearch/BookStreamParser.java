@@ -0,0 +1,363 @@
+package com.example.android.booksearch;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull-based parser for Books API volume list responses.
+ * <p>
+ * Instead of reading the whole response into a String and building a DOM tree of every
+ * volume field, {@link BookStreamParser} walks the JSON tokens straight from the
+ * {@link InputStream}, keeps only the volume "id" and the "volumeInfo" fields displayed to
+ * the user (title, authors, publisher, publishedDate and the cover thumbnail from
+ * "imageLinks") and skips everything else without materializing it. The bytes are
+ * decoded once, by a {@link Utf8Reader} working in a pooled buffer.
+ * <p>
+ * Single volume responses ("/volumes/{id}") are read the same way into a
+ * {@link BookDetail}.
+ */
+
+public final class BookStreamParser {
+
+    /**
+     * Receives every {@link Book} as soon as it has been decoded from the stream.
+     */
+    public interface OnBookParsedListener {
+        void onBookParsed(Book book);
+    }
+
+    /**
+     * Longer descriptions are cut, the detail view has no room for more.
+     */
+    static final int MAX_DESCRIPTION_LENGTH = 8000;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link BookStreamParser}
+     * object. This class is only meant to hold static methods.
+     */
+    private BookStreamParser() {
+    }
+
+    /**
+     * Parse the response from the given {@link InputStream} and return an
+     * {@link ArrayList<Book>} with all books found. It is empty if the response contains
+     * no "items" array, which is how the Books API answers past the last result.
+     */
+    public static ArrayList<Book> parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parse the response from the given {@link InputStream} like
+     * {@link #parse(InputStream)}, reading at most the given number of bytes.
+     *
+     * @throws IOException if the response is malformed, or longer than maxBytes.
+     */
+    public static ArrayList<Book> parse(InputStream inputStream, long maxBytes)
+            throws IOException {
+        final ArrayList<Book> books = new ArrayList<>();
+        parse(inputStream, maxBytes, new OnBookParsedListener() {
+            @Override
+            public void onBookParsed(Book book) {
+                books.add(book);
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Parse the response from the given {@link InputStream} and pass every decoded
+     * {@link Book} to the listener.
+     *
+     * @return true if the response contained an "items" array, false otherwise.
+     */
+    public static boolean parse(InputStream inputStream, OnBookParsedListener listener)
+            throws IOException {
+        return parse(inputStream, Long.MAX_VALUE, listener);
+    }
+
+    /**
+     * Decode the UTF-8 bytes of the stream straight into the JSON reader, through a pooled
+     * buffer, and pass every {@link Book} to the listener.
+     */
+    private static boolean parse(InputStream inputStream, long maxBytes,
+                                 OnBookParsedListener listener) throws IOException {
+        Utf8Reader utf8Reader = new Utf8Reader(inputStream, maxBytes);
+        try {
+            return parseItems(new JsonReader(utf8Reader), listener);
+        } finally {
+            // The stream itself is closed by its owner, e.g. to reuse its connection.
+            utf8Reader.close();
+        }
+    }
+
+    /**
+     * Parse a single volume response from the given {@link InputStream}, reading at most
+     * the given number of bytes.
+     *
+     * @return the details of the volume, or null if the response has no volume "id".
+     * @throws IOException if the response is malformed, or longer than maxBytes.
+     */
+    public static BookDetail parseDetail(InputStream inputStream, long maxBytes)
+            throws IOException {
+        Utf8Reader utf8Reader = new Utf8Reader(inputStream, maxBytes);
+        try {
+            return readDetail(new JsonReader(utf8Reader));
+        } finally {
+            utf8Reader.close();
+        }
+    }
+
+    private static boolean parseItems(JsonReader reader, OnBookParsedListener listener)
+            throws IOException {
+        boolean hasItems = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("items".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                hasItems = true;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Book book = readItem(reader);
+                    if (book != null) {
+                        listener.onBookParsed(book);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hasItems;
+    }
+
+    /**
+     * Read a single element of the "items" array. Returns null if the element has
+     * no "volumeInfo" object.
+     */
+    private static Book readItem(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String id = null;
+        Book book = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() == JsonToken.STRING) {
+                id = reader.nextString();
+            } else if ("volumeInfo".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                book = readVolumeInfo(reader, id);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (book != null && book.getId() == null && id != null) {
+            // The id came after "volumeInfo" (the Books API sends it first).
+            book = new Book(id, book.getTitle(), book.getAuthors(), book.getPublisher(),
+                    book.getPublishedDate(), book.getThumbnailUrl());
+        }
+        return book;
+    }
+
+    /**
+     * Read the "volumeInfo" object and create a {@link Book} with the given volume id
+     * from it.
+     */
+    private static Book readVolumeInfo(JsonReader reader, String id) throws IOException {
+        String title = "";
+        List<String> authors = null;
+        String publisher = null;
+        String publishedDate = null;
+        String thumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "title":
+                    title = reader.nextString();
+                    break;
+                case "authors":
+                    authors = readStrings(reader);
+                    break;
+                case "publisher":
+                    publisher = reader.nextString();
+                    break;
+                case "publishedDate":
+                    publishedDate = reader.nextString();
+                    break;
+                case "imageLinks":
+                    thumbnailUrl = readThumbnailUrl(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // Not every JSON response contains publishedDate information or a cover:
+        return new Book(id, title, authors, publisher, publishedDate, thumbnailUrl);
+    }
+
+    /**
+     * Read a volume object into a {@link BookDetail}, or null if it has no "id".
+     */
+    private static BookDetail readDetail(JsonReader reader) throws IOException {
+        String id = null;
+        String description = null;
+        int pageCount = 0;
+        List<String> categories = null;
+        List<String> isbns = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() == JsonToken.STRING) {
+                id = reader.nextString();
+            } else if ("volumeInfo".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    JsonToken token = reader.peek();
+                    if ("description".equals(field) && token == JsonToken.STRING) {
+                        description = reader.nextString();
+                        if (description.length() > MAX_DESCRIPTION_LENGTH) {
+                            description = description.substring(0, MAX_DESCRIPTION_LENGTH);
+                        }
+                    } else if ("pageCount".equals(field) && token == JsonToken.NUMBER) {
+                        pageCount = Math.max(0, reader.nextInt());
+                    } else if ("categories".equals(field)) {
+                        categories = readStrings(reader);
+                    } else if ("industryIdentifiers".equals(field)) {
+                        isbns = readIsbns(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return id != null ? new BookDetail(id, description, pageCount, categories, isbns) : null;
+    }
+
+    /**
+     * Read the "industryIdentifiers" array and return the ISBNs found, the ISBN-13 first.
+     */
+    private static List<String> readIsbns(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        String isbn13 = null;
+        String isbn10 = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            String type = null;
+            String identifier = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("type".equals(name) && reader.peek() == JsonToken.STRING) {
+                    type = reader.nextString();
+                } else if ("identifier".equals(name) && reader.peek() == JsonToken.STRING) {
+                    identifier = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if ("ISBN_13".equals(type)) {
+                isbn13 = identifier;
+            } else if ("ISBN_10".equals(type)) {
+                isbn10 = identifier;
+            }
+        }
+        reader.endArray();
+        ArrayList<String> isbns = new ArrayList<>(2);
+        if (isbn13 != null) {
+            isbns.add(isbn13);
+        }
+        if (isbn10 != null) {
+            isbns.add(isbn10);
+        }
+        return isbns;
+    }
+
+    /**
+     * Read the "imageLinks" object and return the URL of the cover thumbnail,
+     * or null if there is none.
+     */
+    private static String readThumbnailUrl(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String thumbnail = null;
+        String smallThumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("thumbnail".equals(name) && reader.peek() == JsonToken.STRING) {
+                thumbnail = reader.nextString();
+            } else if ("smallThumbnail".equals(name) && reader.peek() == JsonToken.STRING) {
+                smallThumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return secureUrl(thumbnail != null ? thumbnail : smallThumbnail);
+    }
+
+    /**
+     * Return the cover URL using HTTPS. The Books API returns plain HTTP links to
+     * images which are also served over HTTPS.
+     */
+    static String secureUrl(String url) {
+        if (url != null && url.startsWith("http://")) {
+            return "https://" + url.substring("http://".length());
+        }
+        return url;
+    }
+
+    /**
+     * Read an array of strings, like "authors", into a list.
+     */
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        ArrayList<String> strings = new ArrayList<>(2);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.STRING) {
+                strings.add(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return strings;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayDeque;
+
+/**
+ * A small pool of byte buffers, shared by the threads reading response bodies, so reading
+ * a response allocates no buffer once the pool is warm.
+ */
+
+final class BufferPool {
+
+    /**
+     * Size (in bytes) of every pooled buffer, larger than most compressed responses.
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Number of buffers kept, about the number of requests running at the same time.
+     * Buffers released when the pool is full are left to the garbage collector.
+     */
+    private static final int MAX_POOLED = 8;
+
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>(MAX_POOLED);
+
+    /**
+     * Create a private constructor because no one should ever create a {@link BufferPool}
+     * object. This class is only meant to hold static methods.
+     */
+    private BufferPool() {
+    }
+
+    /**
+     * Return a buffer of {@link #BUFFER_SIZE} bytes, with any content, which should be
+     * given back with {@link #release(byte[])} once no longer used.
+     */
+    static byte[] acquire() {
+        synchronized (POOL) {
+            byte[] buffer = POOL.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Give back a buffer returned by {@link #acquire()}. It must not be used afterwards.
+     */
+    static void release(byte[] buffer) {
+        if (buffer.length != BUFFER_SIZE) {
+            return;
+        }
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED) {
+                POOL.push(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.booksearch;
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Logger;
+
+/**
+ * A directory of cache files kept under a limit of bytes.
+ * <p>
+ * Files are written to a temporary file first and then committed, so a reader never sees
+ * a partially written file. When the directory grows over its limit, the least recently
+ * used files (by last modification time, see {@link #touch(File)}) are deleted.
+ */
+
+public final class DiskCacheDirectory {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(DiskCacheDirectory.class.getSimpleName());
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private long mSize;
+
+    /**
+     * Open (and create if needed) the cache directory.
+     *
+     * @param directory the directory holding the cache files
+     * @param maxBytes  maximum total size of the files in the directory
+     */
+    public DiskCacheDirectory(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            LOGGER.severe("Cannot create disk cache directory " + mDirectory);
+        }
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                mSize += file.length();
+            }
+        }
+    }
+
+    /**
+     * Return the file holding the entry for the given key. Different keys may share
+     * a file, so the key should be stored in the file and checked when it is read.
+     */
+    public File fileFor(String key, String extension) {
+        return new File(mDirectory, Integer.toHexString(key.hashCode()) + extension);
+    }
+
+    /**
+     * Return a temporary file to write the new content of the given file to.
+     */
+    public File tempFileFor(File file) {
+        return new File(mDirectory, file.getName() + ".tmp");
+    }
+
+    /**
+     * Replace the file with the completely written temporary file and trim the directory
+     * back under its byte limit.
+     *
+     * @return true if the file has been replaced.
+     */
+    public synchronized boolean commit(File tempFile, File file) {
+        long previousLength = file.length();
+        if (!tempFile.renameTo(file)) {
+            LOGGER.severe("Cannot store cache file " + file);
+            tempFile.delete();
+            return false;
+        }
+        mSize += file.length() - previousLength;
+        trim();
+        return true;
+    }
+
+    /**
+     * Mark the file as recently used, keeping it away from eviction.
+     */
+    public void touch(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Return the total size of the files in the directory.
+     */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * Delete the least recently used files until the directory fits in its byte limit.
+     */
+    private void trim() {
+        if (mSize <= mMaxBytes) {
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            if (mSize <= mMaxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+}
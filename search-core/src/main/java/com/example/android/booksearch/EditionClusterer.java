@@ -0,0 +1,387 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Collapses the editions and reprints of the same work found among the results into a
+ * single {@link Work}, so a page of results shows more distinct works.
+ * <p>
+ * Books are compared by a fingerprint of their title and first author: folded to lower
+ * case without accents, punctuation, bracketed notes ("(Illustrated Edition)"), edition
+ * words and articles at either end ("Hobbit, The"). Books with the same fingerprint, or
+ * whose titles only differ by a subtitle, are editions of the same work. Titles which are
+ * spelled slightly differently are matched with MinHash: every title gets a signature of
+ * its letter trigrams, and works sharing a band of the signature are compared by the
+ * Jaccard similarity of their trigrams.
+ * <p>
+ * Books are added one at a time as pages arrive, and every book costs the same bounded
+ * work (a few hash lookups and at most {@link #MAX_CANDIDATES} comparisons), so clustering
+ * stays linear in the number of results. A clusterer is not thread safe.
+ */
+
+public final class EditionClusterer {
+
+    /**
+     * Minimum Jaccard similarity of the title trigrams of two books by the same author for
+     * them to be editions of the same work.
+     */
+    static final double MIN_SIMILARITY = 0.7;
+
+    /**
+     * Maximum number of works a book is compared with when its fingerprint matches none.
+     */
+    static final int MAX_CANDIDATES = 8;
+
+    /**
+     * Number of hash functions of the MinHash signatures.
+     */
+    private static final int HASH_COUNT = 16;
+
+    /**
+     * Number of signature values per band. Works are compared if they share any band, so
+     * titles with a similarity of 0.7 are compared with a probability of 0.99.
+     */
+    private static final int BAND_SIZE = 2;
+
+    /**
+     * Seeds of the hash functions of the signatures.
+     */
+    private static final int[] HASH_SEEDS = new int[HASH_COUNT];
+
+    static {
+        int seed = 0x2545F491;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            seed = mix(seed + 0x9E3779B9);
+            HASH_SEEDS[i] = seed;
+        }
+    }
+
+    /**
+     * Notes in brackets, e.g. "(Illustrated Edition)" or "[Paperback]".
+     */
+    private static final Pattern BRACKETS = Pattern.compile("\\([^)]*\\)|\\[[^\\]]*\\]");
+
+    /**
+     * Ordinal numbers, e.g. "2nd" in "2nd edition".
+     */
+    private static final Pattern ORDINAL = Pattern.compile("\\d+(st|nd|rd|th)");
+
+    /**
+     * Words describing the edition rather than the work.
+     */
+    private static final HashSet<String> EDITION_WORDS = new HashSet<>(Arrays.asList(
+            "edition", "editions", "ed", "illustrated", "annotated", "unabridged", "abridged",
+            "revised", "expanded", "updated", "reprint", "paperback", "hardcover", "ebook"));
+
+    /**
+     * Articles left out at the start and end of a title.
+     */
+    private static final HashSet<String> ARTICLES = new HashSet<>(Arrays.asList(
+            "the", "a", "an"));
+
+    /**
+     * A work and its editions found so far, the first one being the most relevant.
+     */
+    public static final class Work {
+
+        private final int mIndex;
+        private final ArrayList<Book> mEditions = new ArrayList<>(1);
+        private final String mAuthorKey;
+        private final int[] mTrigrams;
+
+        private Work(int index, String authorKey, int[] trigrams) {
+            mIndex = index;
+            mAuthorKey = authorKey;
+            mTrigrams = trigrams;
+        }
+
+        /**
+         * Get the position of the work among the works of the clusterer, in the order
+         * they were found.
+         */
+        public int getIndex() {
+            return mIndex;
+        }
+
+        /**
+         * Get the book shown for the work: the first edition added.
+         */
+        public Book getBook() {
+            return mEditions.get(0);
+        }
+
+        /**
+         * Get the editions of the work, in the order they were added.
+         *
+         * @return unmodifiable view of the editions, which grows as editions are added.
+         */
+        public List<Book> getEditions() {
+            return Collections.unmodifiableList(mEditions);
+        }
+
+        /**
+         * Get the number of editions of the work.
+         */
+        public int getEditionCount() {
+            return mEditions.size();
+        }
+    }
+
+    /**
+     * Every work, in the order they were found.
+     */
+    private final ArrayList<Work> mWorks = new ArrayList<>();
+
+    /**
+     * Works by the author and title keys of their editions.
+     */
+    private final HashMap<String, Work> mByTitle = new HashMap<>();
+
+    /**
+     * Works by the author and main title (without the subtitle) of their editions.
+     */
+    private final HashMap<String, Work> mByMainTitle = new HashMap<>();
+
+    /**
+     * Works by the bands of their signatures.
+     */
+    private final HashMap<Long, ArrayList<Work>> mByBand = new HashMap<>();
+
+    /**
+     * Return the works of the books, in the order of their most relevant edition.
+     *
+     * @param books results in the order they are shown
+     */
+    public static List<Work> cluster(List<Book> books) {
+        EditionClusterer clusterer = new EditionClusterer();
+        for (Book book : books) {
+            clusterer.add(book);
+        }
+        return clusterer.getWorks();
+    }
+
+    /**
+     * Add the book to the work it is an edition of, or to a new work at the end.
+     *
+     * @return the work of the book. It is new if its index is the last one.
+     */
+    public Work add(Book book) {
+        String authorKey = authorKey(book.getAuthors());
+        String rawTitle = book.getTitle() != null ? book.getTitle() : "";
+        int colon = rawTitle.indexOf(':');
+        String titleKey = authorKey + '|' + titleKey(rawTitle);
+        String mainTitleKey = colon > 0
+                ? authorKey + '|' + titleKey(rawTitle.substring(0, colon)) : null;
+
+        Work work = mByTitle.get(titleKey);
+        if (work == null && mainTitleKey != null) {
+            // "Dune: Deluxe Edition" after "Dune".
+            work = mByTitle.get(mainTitleKey);
+        }
+        if (work == null && mainTitleKey == null) {
+            // "Dune" after "Dune: Deluxe Edition".
+            work = mByMainTitle.get(titleKey);
+        }
+        int[] trigrams = null;
+        int[] signature = null;
+        if (work == null) {
+            trigrams = trigrams(titleKey.substring(authorKey.length() + 1));
+            signature = signature(trigrams);
+            work = findSimilar(authorKey, trigrams, signature);
+        }
+        if (work == null) {
+            work = new Work(mWorks.size(), authorKey, trigrams);
+            mWorks.add(work);
+            for (int band = 0; band < HASH_COUNT; band += BAND_SIZE) {
+                Long key = bandKey(authorKey, signature, band);
+                ArrayList<Work> works = mByBand.get(key);
+                if (works == null) {
+                    works = new ArrayList<>(1);
+                    mByBand.put(key, works);
+                }
+                works.add(work);
+            }
+        }
+        if (!mByTitle.containsKey(titleKey)) {
+            mByTitle.put(titleKey, work);
+        }
+        if (mainTitleKey != null && !mByMainTitle.containsKey(mainTitleKey)) {
+            mByMainTitle.put(mainTitleKey, work);
+        }
+        work.mEditions.add(book);
+        return work;
+    }
+
+    /**
+     * Get the works found so far, in the order of their most relevant edition.
+     *
+     * @return unmodifiable view of the works.
+     */
+    public List<Work> getWorks() {
+        return Collections.unmodifiableList(mWorks);
+    }
+
+    /**
+     * Return the work by the same author most similar to the title, or null if none is
+     * similar enough. Only the works sharing a band of the signature are compared, the most
+     * recently found first.
+     */
+    private Work findSimilar(String authorKey, int[] trigrams, int[] signature) {
+        Work best = null;
+        double bestSimilarity = MIN_SIMILARITY;
+        HashSet<Work> compared = new HashSet<>();
+        for (int band = 0; band < HASH_COUNT; band += BAND_SIZE) {
+            ArrayList<Work> works = mByBand.get(bandKey(authorKey, signature, band));
+            if (works == null) {
+                continue;
+            }
+            for (int i = works.size() - 1; i >= 0; i--) {
+                Work work = works.get(i);
+                if (!compared.add(work)) {
+                    continue;
+                }
+                if (work.mAuthorKey.equals(authorKey)) {
+                    double similarity = jaccard(trigrams, work.mTrigrams);
+                    if (similarity >= bestSimilarity) {
+                        best = work;
+                        bestSimilarity = similarity;
+                    }
+                }
+                if (compared.size() == MAX_CANDIDATES) {
+                    return best;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the key of the first author: the last word of the folded name, so "J.R.R.
+     * Tolkien" and "J. R. R. Tolkien" match. Books without authors share the empty key.
+     */
+    static String authorKey(List<String> authors) {
+        if (authors.isEmpty() || authors.get(0) == null) {
+            return "";
+        }
+        String name = SuggestionTrie.normalize(authors.get(0), false);
+        return name.substring(name.lastIndexOf(' ') + 1);
+    }
+
+    /**
+     * Return the fingerprint of the title: its folded words without bracketed notes,
+     * edition words and articles at either end. Titles made only of such words are kept
+     * whole.
+     */
+    static String titleKey(String title) {
+        String words = SuggestionTrie.normalize(BRACKETS.matcher(title).replaceAll(" "), false);
+        ArrayList<String> kept = new ArrayList<>();
+        for (String word : words.split(" ")) {
+            if (!EDITION_WORDS.contains(word) && !ORDINAL.matcher(word).matches()
+                    && !(kept.isEmpty() && ARTICLES.contains(word))) {
+                kept.add(word);
+            }
+        }
+        if (kept.size() > 1 && ARTICLES.contains(kept.get(kept.size() - 1))) {
+            kept.remove(kept.size() - 1);
+        }
+        if (kept.isEmpty()) {
+            return SuggestionTrie.normalize(title, false);
+        }
+        StringBuilder key = new StringBuilder(words.length());
+        for (String word : kept) {
+            if (key.length() > 0) {
+                key.append(' ');
+            }
+            key.append(word);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Return the sorted hashes of the distinct letter trigrams of the title key, the
+     * start and end of the title counting as spaces.
+     */
+    private static int[] trigrams(String titleKey) {
+        String padded = ' ' + titleKey + ' ';
+        int count = Math.max(padded.length() - 2, 0);
+        int[] trigrams = new int[count];
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = (padded.charAt(i) << 16 ^ padded.charAt(i + 1) << 8)
+                    ^ padded.charAt(i + 2) * 0x01000193;
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Return the MinHash signature of the trigrams: the smallest value of every hash
+     * function over them.
+     */
+    private static int[] signature(int[] trigrams) {
+        int[] signature = new int[HASH_COUNT];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int trigram : trigrams) {
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int hash = mix(trigram ^ HASH_SEEDS[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static Long bandKey(String authorKey, int[] signature, int band) {
+        long key = authorKey.hashCode() * 31L + band;
+        for (int i = band; i < band + BAND_SIZE; i++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[i];
+        }
+        return key;
+    }
+
+    /**
+     * Return the Jaccard similarity of two sorted sets of trigrams.
+     */
+    private static double jaccard(int[] a, int[] b) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 1.0 : (double) common / union;
+    }
+
+    /**
+     * Finalization step of MurmurHash3, which spreads every bit of the value.
+     */
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        value ^= value >>> 16;
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.booksearch;
+
+import java.net.HttpURLConnection;
+
+/**
+ * A {@link FetchHandle} lets another thread abort a request made by {@link QueryUtils}.
+ * <p>
+ * Cancelling the handle disconnects the {@link HttpURLConnection} currently used by the
+ * request, so a thread blocked on connecting or reading the response is released
+ * immediately instead of waiting for the timeouts.
+ * <p>
+ * The handle also tells the {@link HostRateLimiter} which {@link HostRateLimiter.Lane} the
+ * request belongs to, so background requests give way to the searches of the user.
+ */
+
+public final class FetchHandle {
+
+    /**
+     * Lane of the request.
+     */
+    private final HostRateLimiter.Lane mLane;
+
+    /**
+     * Connection of the request in progress, or null if there is none.
+     */
+    private HttpURLConnection mConnection;
+
+    /**
+     * True once {@link #cancel()} has been called.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Create a handle of a search made by the user.
+     */
+    public FetchHandle() {
+        this(HostRateLimiter.Lane.INTERACTIVE);
+    }
+
+    /**
+     * Create a handle of a request of the given lane.
+     */
+    public FetchHandle(HostRateLimiter.Lane lane) {
+        mLane = lane;
+    }
+
+    /**
+     * Return the lane of the request.
+     */
+    public HostRateLimiter.Lane getLane() {
+        return mLane;
+    }
+
+    /**
+     * Cancel the request and abort its connection (if it is already open).
+     */
+    public void cancel() {
+        HttpURLConnection connection;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            connection = mConnection;
+            mConnection = null;
+        }
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Return true if the request has been cancelled.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Register the connection used by the request.
+     *
+     * @return false if the request has already been cancelled and the connection
+     * should not be used.
+     */
+    synchronized boolean attach(HttpURLConnection connection) {
+        if (mCancelled) {
+            return false;
+        }
+        mConnection = connection;
+        return true;
+    }
+
+    /**
+     * Forget the connection once the request is finished.
+     */
+    synchronized void detach() {
+        mConnection = null;
+    }
+}
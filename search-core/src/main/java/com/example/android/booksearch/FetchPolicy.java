@@ -0,0 +1,237 @@
+package com.example.android.booksearch;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how {@link QueryUtils} makes a request resilient to slow or flaky networks:
+ * <ul>
+ * <li>failed attempts (network errors, timeouts, 408, 429 and 5xx responses) are retried
+ * with exponential backoff and full jitter, up to a fixed number of attempts;</li>
+ * <li>a {@code Retry-After} sent with a 429 or 503 is honored, unless it is too long
+ * to wait for, in which case the request gives up right away;</li>
+ * <li>timeouts follow the latencies observed so far (p99 times a safety factor, between
+ * a floor and the fixed {@link HttpConnections} timeouts), so a stalled connection is
+ * dropped after a few seconds instead of tens of seconds;</li>
+ * <li>if an attempt is still running after the usual (p95) duration of an attempt, a
+ * hedged second attempt is sent and the first response to arrive is used.</li>
+ * </ul>
+ * Only GET requests are made, so sending the same request twice is always safe.
+ * A single policy is meant to be shared by every request to the same server.
+ */
+
+public final class FetchPolicy {
+
+    /**
+     * Shortest timeout (in milliseconds) the adaptive timeouts can go down to.
+     */
+    private static final long MIN_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Timeouts are this many times the p99 of the latencies observed.
+     */
+    private static final int TIMEOUT_FACTOR = 4;
+
+    /**
+     * Number of successful attempts observed before the timeouts and the hedge delay
+     * follow the latencies instead of the defaults.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * Shortest delay (in milliseconds) before a hedged attempt is sent.
+     */
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+
+    /**
+     * Longest Retry-After (in milliseconds) worth waiting for, longer ones fail the request.
+     */
+    private static final long MAX_RETRY_AFTER_MILLIS = 10000;
+
+    private final int mMaxAttempts;
+    private final long mInitialBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final long mDefaultHedgeDelayMillis;
+    private final Executor mHedgeExecutor;
+    private final Random mRandom = new Random();
+
+    /**
+     * Latencies (in milliseconds) of the successful attempts.
+     */
+    private final Histogram mConnectMillis = new Histogram();
+    private final Histogram mFirstByteMillis = new Histogram();
+    private final Histogram mAttemptMillis = new Histogram();
+
+    /**
+     * Create a new {@link FetchPolicy}.
+     *
+     * @param maxAttempts          number of attempts of a request, including the first one
+     * @param initialBackoffMillis longest wait before the first retry, doubled for each
+     *                             further retry (the actual wait is random, up to that)
+     * @param maxBackoffMillis     longest wait between two attempts
+     * @param hedgeDelayMillis     how long an attempt runs before it is hedged, until
+     *                             enough latencies have been observed
+     * @param hedgeExecutor        executor running the attempts of hedged requests (it
+     *                             must be able to run two per request at once), or null
+     *                             to never hedge
+     */
+    public FetchPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis,
+                       long hedgeDelayMillis, Executor hedgeExecutor) {
+        if (maxAttempts < 1 || initialBackoffMillis < 0
+                || maxBackoffMillis < initialBackoffMillis || hedgeDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid policy: " + maxAttempts
+                    + " attempts, backoff " + initialBackoffMillis + "-" + maxBackoffMillis
+                    + " ms, hedge delay " + hedgeDelayMillis + " ms");
+        }
+        mMaxAttempts = maxAttempts;
+        mInitialBackoffMillis = initialBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mDefaultHedgeDelayMillis = hedgeDelayMillis;
+        mHedgeExecutor = hedgeExecutor;
+    }
+
+    /**
+     * Return the number of attempts of a request, including the first one.
+     */
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Return true if slow attempts are hedged.
+     */
+    public boolean isHedging() {
+        return mHedgeExecutor != null;
+    }
+
+    Executor getHedgeExecutor() {
+        return mHedgeExecutor;
+    }
+
+    /**
+     * Return true if a request failing with the given response code (0 when no response
+     * was received at all) may succeed when sent again.
+     */
+    public static boolean isRetryable(int responseCode) {
+        switch (responseCode) {
+            case 0:
+            case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+            case 429:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+            case HttpURLConnection.HTTP_BAD_GATEWAY:
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+            case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Return how long (in milliseconds) to wait before the given retry, or -1 if the
+     * request should not be retried.
+     *
+     * @param retry           number of the retry, 1 for the first one
+     * @param retryAfterMillis delay asked for by the server, or -1 if none
+     */
+    public long getBackoffMillis(int retry, long retryAfterMillis) {
+        if (retry >= mMaxAttempts || retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+            return -1;
+        }
+        long ceiling = mInitialBackoffMillis << Math.min(retry - 1, 20);
+        ceiling = Math.min(ceiling, mMaxBackoffMillis);
+        long backoff;
+        synchronized (mRandom) {
+            // Full jitter, so clients failing together don't retry together.
+            backoff = (long) (mRandom.nextDouble() * ceiling);
+        }
+        return Math.max(backoff, retryAfterMillis);
+    }
+
+    /**
+     * Return the connect timeout (in milliseconds) of the next attempt.
+     */
+    public int getConnectTimeoutMillis() {
+        return adaptiveTimeout(mConnectMillis, HttpConnections.CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Return the read timeout (in milliseconds) of the next attempt.
+     */
+    public int getReadTimeoutMillis() {
+        return adaptiveTimeout(mFirstByteMillis, HttpConnections.READ_TIMEOUT);
+    }
+
+    /**
+     * Return how long (in milliseconds) an attempt may run before it is hedged.
+     */
+    public long getHedgeDelayMillis() {
+        if (mAttemptMillis.getCount() < MIN_SAMPLES) {
+            return mDefaultHedgeDelayMillis;
+        }
+        return Math.max(mAttemptMillis.getPercentile(95), MIN_HEDGE_DELAY_MILLIS);
+    }
+
+    /**
+     * Record the latencies of a successful attempt.
+     *
+     * @param connectNanos   time spent connecting
+     * @param firstByteNanos time from the request being sent to the response code
+     * @param attemptNanos   time of the whole attempt, including reading the body
+     */
+    public void recordSuccess(long connectNanos, long firstByteNanos, long attemptNanos) {
+        mConnectMillis.record(TimeUnit.NANOSECONDS.toMillis(connectNanos));
+        mFirstByteMillis.record(TimeUnit.NANOSECONDS.toMillis(firstByteNanos));
+        mAttemptMillis.record(TimeUnit.NANOSECONDS.toMillis(attemptNanos));
+    }
+
+    private static int adaptiveTimeout(Histogram latencies, int defaultMillis) {
+        if (latencies.getCount() < MIN_SAMPLES) {
+            return defaultMillis;
+        }
+        long timeout = latencies.getPercentile(99) * TIMEOUT_FACTOR;
+        return (int) Math.min(Math.max(timeout, MIN_TIMEOUT_MILLIS), defaultMillis);
+    }
+
+    /**
+     * Return the delay (in milliseconds) asked for by the Retry-After header of the
+     * response, either in seconds or as an HTTP date, or -1 if there is none.
+     */
+    static long parseRetryAfter(HttpURLConnection urlConnection) {
+        String retryAfter = urlConnection.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())), 0);
+        } catch (NumberFormatException e) {
+            long date = urlConnection.getHeaderFieldDate("Retry-After", -1);
+            return date == -1 ? -1 : Math.max(date - System.currentTimeMillis(), 0);
+        }
+    }
+
+    /**
+     * Wait for the given time, checking regularly whether the request was cancelled.
+     *
+     * @return false if the request has been cancelled (or the thread interrupted).
+     */
+    static boolean sleep(long millis, FetchHandle handle) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long waitNanos;
+        while ((waitNanos = deadline - System.nanoTime()) > 0) {
+            if (handle != null && handle.isCancelled()) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1,
+                        HostRateLimiter.MAX_SLEEP_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return handle == null || !handle.isCancelled();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.booksearch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helper methods to store small state files (the search snapshot, the query history,
+ * the request budget): written through a temporary file so a reader never sees half of
+ * one, and read in one shot into memory.
+ */
+
+final class FileUtils {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(FileUtils.class.getSimpleName());
+
+    /**
+     * Writes the content of a file.
+     */
+    interface Content {
+        void writeTo(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link FileUtils} object. This class is only meant to hold static methods.
+     */
+    private FileUtils() {
+    }
+
+    /**
+     * Write the content to a temporary file next to the file, and replace the file with it
+     * once it has been written completely. Writes of the same file share the temporary
+     * file, so the caller must not run them at the same time.
+     *
+     * @throws IOException if the file could not be replaced. It is left as it was.
+     */
+    static void writeAtomically(File file, Content content) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            content.writeTo(output);
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + tempFile);
+            }
+        } catch (IOException e) {
+            closeQuietly(output);
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the whole file into memory.
+     *
+     * @param maxBytes size of the largest file read. Larger files were not written by the
+     *                 caller, they are not read.
+     * @return the content of the file, or null if there is no file.
+     * @throws IOException if the file could not be read, or is larger than maxBytes.
+     */
+    static DataInputStream readFully(File file, int maxBytes) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            long length = input.length();
+            if (length > maxBytes) {
+                throw new IOException(file + " too large: " + length + " bytes");
+            }
+            byte[] bytes = new byte[(int) length];
+            input.readFully(bytes);
+            return new DataInputStream(new ByteArrayInputStream(bytes));
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Close the stream or file, logging the error it throws, if any.
+     */
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error closing a file", e);
+            }
+        }
+    }
+}
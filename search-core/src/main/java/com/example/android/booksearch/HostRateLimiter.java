@@ -0,0 +1,266 @@
+package com.example.android.booksearch;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests sent to each host, so a burst of searches (like a batch
+ * import) does not get the app throttled by the server.
+ * <p>
+ * Every host has a token bucket: up to {@code burst} requests go out right away, then
+ * requests are spaced to {@code requestsPerSecond}. Requests belong to a {@link Lane},
+ * given by their {@link FetchHandle}, and lanes have priorities:
+ * <ul>
+ * <li>searches of the user reserve their slot in arrival order, borrowing tokens from the
+ * future if needed, so they are never queued behind other requests;</li>
+ * <li>other lanes only take a token which is already there, and prefetching and batches
+ * leave half of the burst to the searches of the user.</li>
+ * </ul>
+ * With a {@link RequestBudget}, requests of a lane out of daily budget are not sent at all,
+ * and are answered from the cache. The same happens while a host is paused after asking
+ * to slow down (a 429, or a 403 "rateLimitExceeded"): only the searches of the user wait
+ * for a short pause to end.
+ */
+
+public final class HostRateLimiter {
+
+    /**
+     * Longest sleep (in milliseconds) between two checks for cancellation.
+     */
+    static final long MAX_SLEEP_MILLIS = 50;
+
+    /**
+     * How long (in milliseconds) a host is paused after asking to slow down without
+     * saying for how long.
+     */
+    static final long DEFAULT_PAUSE_MILLIS = 2000;
+
+    /**
+     * Longest pause (in milliseconds) the searches of the user wait for, they are answered
+     * from the cache during longer ones.
+     */
+    static final long MAX_PAUSE_WAIT_MILLIS = 10000;
+
+    /**
+     * Result of {@link #reserve(String, Lane)} when the request should not be sent.
+     */
+    private static final long SHED = Long.MIN_VALUE;
+
+    /**
+     * Kinds of requests, from the most to the least urgent.
+     */
+    public enum Lane {
+        /**
+         * Searches typed by the user, and the books they open.
+         */
+        INTERACTIVE,
+        /**
+         * Next pages of the results being read.
+         */
+        PAGING,
+        /**
+         * Batch searches, e.g. an import.
+         */
+        BATCH,
+        /**
+         * Searches and details fetched in case they are needed later.
+         */
+        PREFETCH
+    }
+
+    /**
+     * Tokens available for a single host.
+     */
+    private static final class Bucket {
+        double tokens;
+        long updatedAt;
+
+        /**
+         * Time (as given by {@link System#nanoTime()}) until which the host is paused.
+         */
+        long pausedUntil;
+    }
+
+    private final double mRequestsPerSecond;
+    private final int mBurst;
+    private final RequestBudget mBudget;
+    private final HashMap<String, Bucket> mBuckets = new HashMap<>();
+
+    /**
+     * Create a new {@link HostRateLimiter}.
+     *
+     * @param requestsPerSecond sustained rate of requests allowed per host
+     * @param burst             number of requests which may be sent at once
+     */
+    public HostRateLimiter(double requestsPerSecond, int burst) {
+        this(requestsPerSecond, burst, null);
+    }
+
+    /**
+     * Create a new {@link HostRateLimiter} sending requests within the daily budget.
+     *
+     * @param budget daily budget of the requests, or null for no daily limit
+     */
+    public HostRateLimiter(double requestsPerSecond, int burst, RequestBudget budget) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate " + requestsPerSecond
+                    + "/s, burst " + burst);
+        }
+        mRequestsPerSecond = requestsPerSecond;
+        mBurst = burst;
+        mBudget = budget;
+    }
+
+    /**
+     * Wait until a request may be sent to the host.
+     *
+     * @param host   host name the request is sent to
+     * @param handle handle of the request, giving its lane and to stop waiting when it is
+     *               cancelled, or null for a search of the user
+     * @return false if the request should not be sent: it has been cancelled (or the
+     * thread interrupted) while waiting, or it has been shed.
+     */
+    public boolean acquire(String host, FetchHandle handle) {
+        Lane lane = handle != null ? handle.getLane() : Lane.INTERACTIVE;
+        if (mBudget != null && !mBudget.allows(lane, System.currentTimeMillis())) {
+            return shed();
+        }
+        while (true) {
+            long waitNanos = reserve(host, lane);
+            if (waitNanos == SHED) {
+                return shed();
+            }
+            if (!sleep(Math.abs(waitNanos), handle)) {
+                return false;
+            }
+            if (waitNanos >= 0) {
+                // The token has been taken.
+                break;
+            }
+        }
+        if (mBudget != null && !mBudget.tryAcquire(lane, System.currentTimeMillis())) {
+            return shed();
+        }
+        return handle == null || !handle.isCancelled();
+    }
+
+    /**
+     * Pause the host after it asked to slow down.
+     *
+     * @param retryAfterMillis delay asked for by the server, or -1 if none
+     */
+    public synchronized void pause(String host, long retryAfterMillis) {
+        long now = System.nanoTime();
+        Bucket bucket = getBucket(host, now);
+        long pausedUntil = now + TimeUnit.MILLISECONDS.toNanos(
+                retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_PAUSE_MILLIS);
+        if (pausedUntil - bucket.pausedUntil > 0) {
+            bucket.pausedUntil = pausedUntil;
+        }
+    }
+
+    /**
+     * Stop sending requests for the rest of the day, after the server said the daily
+     * quota is used up. Without a budget, the host is paused as long as it can be waited
+     * for.
+     */
+    public void quotaExceeded(String host) {
+        if (mBudget != null) {
+            mBudget.markExhausted(System.currentTimeMillis());
+        } else {
+            pause(host, MAX_PAUSE_WAIT_MILLIS);
+        }
+    }
+
+    /**
+     * Take a token from the bucket of the host for a request of the lane.
+     *
+     * @return how long (in nanoseconds) to wait before the token may be used, or minus how
+     * long to wait before asking again if no token has been taken, or {@link #SHED}.
+     */
+    private synchronized long reserve(String host, Lane lane) {
+        long now = System.nanoTime();
+        Bucket bucket = getBucket(host, now);
+        long pauseNanos = bucket.pausedUntil - now;
+        if (pauseNanos > 0) {
+            boolean waitable = lane == Lane.INTERACTIVE
+                    && pauseNanos <= TimeUnit.MILLISECONDS.toNanos(MAX_PAUSE_WAIT_MILLIS);
+            return waitable ? -pauseNanos : SHED;
+        }
+        if (lane == Lane.INTERACTIVE) {
+            bucket.tokens -= 1;
+            if (bucket.tokens >= 0) {
+                return 0;
+            }
+            // The token is borrowed from the future, wait until it has been refilled.
+            return (long) (-bucket.tokens / mRequestsPerSecond * 1e9);
+        }
+        double needed = 1 + getReservedTokens(lane);
+        if (bucket.tokens >= needed) {
+            bucket.tokens -= 1;
+            return 0;
+        }
+        // Wait until enough tokens are back, at least a millisecond.
+        return -Math.max((long) ((needed - bucket.tokens) / mRequestsPerSecond * 1e9),
+                TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Return the number of tokens a request of the lane must leave in the bucket.
+     */
+    private double getReservedTokens(Lane lane) {
+        switch (lane) {
+            case INTERACTIVE:
+            case PAGING:
+                return 0;
+            default:
+                return Math.min(mBurst / 2.0, mBurst - 1);
+        }
+    }
+
+    /**
+     * Return the bucket of the host, refilled until now.
+     */
+    private Bucket getBucket(String host, long now) {
+        Bucket bucket = mBuckets.get(host);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.tokens = mBurst;
+            bucket.updatedAt = now;
+            bucket.pausedUntil = now;
+            mBuckets.put(host, bucket);
+        }
+        double refill = (now - bucket.updatedAt) * mRequestsPerSecond / 1e9;
+        bucket.tokens = Math.min(mBurst, bucket.tokens + refill);
+        bucket.updatedAt = now;
+        return bucket;
+    }
+
+    private static boolean shed() {
+        SearchMetrics.getInstance().increment(SearchMetrics.Counter.SHED);
+        return false;
+    }
+
+    /**
+     * Wait for the given time, checking regularly whether the request was cancelled.
+     *
+     * @return false if the request has been cancelled (or the thread interrupted).
+     */
+    private static boolean sleep(long waitNanos, FetchHandle handle) {
+        long deadline = System.nanoTime() + waitNanos;
+        while (waitNanos > 0) {
+            if (handle != null && handle.isCancelled()) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1,
+                        MAX_SLEEP_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            waitNanos = deadline - System.nanoTime();
+        }
+        return handle == null || !handle.isCancelled();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.booksearch;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+
+/**
+ * A {@link BookSearchClient} querying the Books API over HTTP, through a {@link BookCache}.
+ * <p>
+ * Pages of results only carry the fields shown in the list. The details of a book are
+ * fetched on their own with {@link #getDetail(String, FetchHandle)}, when they are needed,
+ * through a {@link BookDetailCache}.
+ */
+
+public final class HttpBookSearchClient implements BookSearchClient {
+
+    /**
+     * URL of the volumes collection of the Books API.
+     */
+    public static final String DEFAULT_BASE_URL = "https://www.googleapis.com/books/v1/volumes";
+
+    /**
+     * Partial response parameter: only the fields read by {@link BookStreamParser} are
+     * requested, instead of the full volume resources.
+     */
+    private static final String FIELDS = "items(id,volumeInfo(title,authors,"
+            + "publisher,publishedDate,imageLinks/thumbnail,imageLinks/smallThumbnail))";
+
+    /**
+     * Partial response parameter of a single volume: only the fields read into a
+     * {@link BookDetail}.
+     */
+    private static final String DETAIL_FIELDS =
+            "id,volumeInfo(description,pageCount,categories,industryIdentifiers)";
+
+    private final String mBaseUrl;
+    private final String mApiKey;
+    private final BookCache mCache;
+    private final BookDetailCache mDetailCache;
+    private final HostRateLimiter mRateLimiter;
+    private final FetchPolicy mPolicy;
+
+    /**
+     * Create a new {@link HttpBookSearchClient}.
+     *
+     * @param baseUrl URL of the volumes collection, e.g. {@link #DEFAULT_BASE_URL}
+     * @param apiKey  API key sent with every request, or null to send none
+     * @param cache   cache of the results, or null to always query the server
+     */
+    public HttpBookSearchClient(String baseUrl, String apiKey, BookCache cache) {
+        this(baseUrl, apiKey, cache, null);
+    }
+
+    /**
+     * Create a new {@link HttpBookSearchClient} sending its requests through a
+     * {@link HostRateLimiter}.
+     *
+     * @param rateLimiter limiter of the requests sent to the server, or null for no limit
+     */
+    public HttpBookSearchClient(String baseUrl, String apiKey, BookCache cache,
+                                HostRateLimiter rateLimiter) {
+        this(baseUrl, apiKey, cache, rateLimiter, null);
+    }
+
+    /**
+     * Create a new {@link HttpBookSearchClient} retrying and hedging its requests as the
+     * {@link FetchPolicy} decides.
+     *
+     * @param policy policy of the requests, or null to make a single attempt per request
+     */
+    public HttpBookSearchClient(String baseUrl, String apiKey, BookCache cache,
+                                HostRateLimiter rateLimiter, FetchPolicy policy) {
+        this(baseUrl, apiKey, cache, null, rateLimiter, policy);
+    }
+
+    /**
+     * Create a new {@link HttpBookSearchClient} caching the details of the books as well.
+     *
+     * @param detailCache cache of the book details, or null to always query the server
+     */
+    public HttpBookSearchClient(String baseUrl, String apiKey, BookCache cache,
+                                BookDetailCache detailCache, HostRateLimiter rateLimiter,
+                                FetchPolicy policy) {
+        mBaseUrl = baseUrl;
+        mApiKey = apiKey;
+        mCache = cache;
+        mDetailCache = detailCache;
+        mRateLimiter = rateLimiter;
+        mPolicy = policy;
+    }
+
+    @Override
+    public ArrayList<Book> search(String searchPhrase, int startIndex, int maxResults,
+                                  FetchHandle handle) {
+        // Equivalent phrases share the same URL and cache entry.
+        String phrase = QueryCanonicalizer.canonicalize(searchPhrase);
+        if (phrase.isEmpty()) {
+            return null;
+        }
+        String requestUrl = createRequestUrl(phrase, startIndex, maxResults);
+        String cacheKey = BookCache.createKey(phrase, startIndex, maxResults);
+        return QueryUtils.fetchBookData(requestUrl, mCache, cacheKey, handle, mRateLimiter,
+                mPolicy);
+    }
+
+    /**
+     * Return the details of the Books API volume. Blocks like a search, so it must not be
+     * called on the main thread of an app.
+     *
+     * @param volumeId id of the volume, see {@link Book#getId()}
+     * @param handle   handle used to cancel the request from another thread, or null
+     * @return the details, or null if the volume was not found, the request failed or
+     * it has been cancelled.
+     */
+    public BookDetail getDetail(String volumeId, FetchHandle handle) {
+        if (volumeId == null || volumeId.isEmpty()) {
+            return null;
+        }
+        return QueryUtils.fetchBookDetail(createDetailUrl(volumeId), mDetailCache, volumeId,
+                handle, mRateLimiter, mPolicy);
+    }
+
+    /**
+     * Return the URL requesting the given page of results for the canonical search phrase.
+     */
+    String createRequestUrl(String searchPhrase, int startIndex, int maxResults) {
+        StringBuilder url = new StringBuilder(mBaseUrl)
+                .append("?q=").append(QueryCanonicalizer.toQueryParameter(searchPhrase))
+                .append("&startIndex=").append(startIndex)
+                .append("&maxResults=").append(maxResults)
+                .append("&fields=").append(FIELDS);
+        if (mApiKey != null) {
+            url.append("&key=").append(mApiKey);
+        }
+        return url.toString();
+    }
+
+    /**
+     * Return the URL requesting the details of the volume.
+     */
+    String createDetailUrl(String volumeId) {
+        StringBuilder url = new StringBuilder(mBaseUrl).append('/');
+        try {
+            url.append(URLEncoder.encode(volumeId, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // Every platform supports UTF-8.
+            throw new IllegalStateException(e);
+        }
+        url.append("?fields=").append(DETAIL_FIELDS);
+        if (mApiKey != null) {
+            url.append("&key=").append(mApiKey);
+        }
+        return url.toString();
+    }
+}
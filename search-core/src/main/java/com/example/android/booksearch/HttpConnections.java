@@ -0,0 +1,134 @@
+package com.example.android.booksearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helper methods to open HTTP connections which can be reused across requests.
+ * <p>
+ * {@link HttpURLConnection} keeps the underlying socket in a pool of idle connections when
+ * the response body has been read to the end and closed, and the connection is NOT
+ * disconnected. Requests made through these helpers therefore skip the TCP and TLS
+ * handshakes whenever a pooled connection to the same host is available.
+ * <p>
+ * Responses are requested gzip-compressed and decompressed here, so the same code works
+ * with any {@link HttpURLConnection} implementation.
+ */
+
+public final class HttpConnections {
+
+    /**
+     * Time (in milliseconds) to wait for data before giving up.
+     */
+    public static final int READ_TIMEOUT = 10000;
+
+    /**
+     * Time (in milliseconds) to wait for a connection before giving up.
+     */
+    public static final int CONNECT_TIMEOUT = 15000;
+
+    /**
+     * Google APIs only compress responses for clients which mention gzip
+     * in their User-Agent.
+     */
+    private static final String USER_AGENT = "BookSearch/1.0 (gzip)";
+
+    /**
+     * Remaining bytes of a response which are read to keep its connection reusable.
+     * Longer leftovers are not worth it, the connection is closed instead.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    static {
+        // These are the defaults, set explicitly so a pool is used on every platform.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", "5");
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link HttpConnections} object. This class is only meant to hold static methods.
+     */
+    private HttpConnections() {
+    }
+
+    /**
+     * Open a GET connection to the URL, asking for a gzip-compressed response.
+     * The connection is not connected yet, so more request headers may be set.
+     */
+    public static HttpURLConnection openGet(URL url) throws IOException {
+        return openGet(url, CONNECT_TIMEOUT, READ_TIMEOUT);
+    }
+
+    /**
+     * Open a GET connection to the URL like {@link #openGet(URL)}, with the given
+     * timeouts (in milliseconds).
+     */
+    public static HttpURLConnection openGet(URL url, int connectTimeout, int readTimeout)
+            throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(readTimeout);
+        urlConnection.setConnectTimeout(connectTimeout);
+        urlConnection.setRequestMethod("GET");
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        urlConnection.setRequestProperty("User-Agent", USER_AGENT);
+        return urlConnection;
+    }
+
+    /**
+     * Return the decompressed body of a successful response.
+     */
+    public static InputStream openBody(HttpURLConnection urlConnection) throws IOException {
+        return decode(urlConnection, urlConnection.getInputStream());
+    }
+
+    /**
+     * Return the decompressed body of a successful response, read from the given stream
+     * (the input stream of the connection, possibly wrapped).
+     */
+    public static InputStream decode(HttpURLConnection urlConnection, InputStream inputStream)
+            throws IOException {
+        if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+            return new GZIPInputStream(inputStream);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Finish the response so its connection can go back to the pool: read what is left
+     * of the body (the parser may stop before the end) and close it. Error responses have
+     * their error body read and closed as well.
+     *
+     * @param body body returned by {@link #openBody(HttpURLConnection)}, or null if it
+     *             was never opened
+     */
+    public static void release(HttpURLConnection urlConnection, InputStream body) {
+        InputStream inputStream = body;
+        if (inputStream == null) {
+            inputStream = urlConnection.getErrorStream();
+        }
+        if (inputStream == null) {
+            return;
+        }
+        byte[] buffer = BufferPool.acquire();
+        try {
+            int drained = 0;
+            int read;
+            while (drained <= MAX_DRAIN_BYTES && (read = inputStream.read(buffer)) != -1) {
+                drained += read;
+            }
+            inputStream.close();
+            if (drained > MAX_DRAIN_BYTES) {
+                urlConnection.disconnect();
+            }
+        } catch (IOException e) {
+            // The connection is broken anyway, make sure it is not reused.
+            urlConnection.disconnect();
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.booksearch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and the time spent waiting for them.
+ */
+
+final class MeteredInputStream extends FilterInputStream {
+
+    private long mBytes;
+    private long mReadNanos;
+
+    MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int read = super.read();
+        mReadNanos += System.nanoTime() - start;
+        if (read != -1) {
+            mBytes++;
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int read = super.read(buffer, offset, length);
+        mReadNanos += System.nanoTime() - start;
+        if (read > 0) {
+            mBytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        long skipped = super.skip(n);
+        mReadNanos += System.nanoTime() - start;
+        mBytes += skipped;
+        return skipped;
+    }
+
+    /**
+     * Return the number of bytes read so far.
+     */
+    long getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * Return the time (in nanoseconds) spent inside the read methods.
+     */
+    long getReadNanos() {
+        return mReadNanos;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.android.booksearch;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Helper methods to turn the text typed by the user into a canonical search phrase.
+ * <p>
+ * Equivalent queries (" Harry  Potter", "harry potter", "HARRY+POTTER", or the same
+ * words with or without accents) give the same phrase, which is used for the request
+ * URL, the cache key, the coalescing of identical requests and the local matching.
+ * The phrase is made of lowercase words without diacritics, separated by '+'. A word
+ * may be restricted to the title or the authors with the {@link #IN_TITLE} or
+ * {@link #IN_AUTHOR} qualifiers of the Books API, e.g.
+ * "intitle:hobbit+inauthor:tolkien".
+ */
+
+public final class QueryCanonicalizer {
+
+    /**
+     * Qualifier restricting the next word to the title.
+     */
+    public static final String IN_TITLE = "intitle:";
+
+    /**
+     * Qualifier restricting the next word to the authors.
+     */
+    public static final String IN_AUTHOR = "inauthor:";
+
+    /**
+     * Latin, Greek and Cyrillic accents left apart by the decomposition. Marks of other
+     * scripts (e.g. Devanagari vowel signs) are part of the letters and are kept.
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("[\\u0300-\\u036f]+");
+
+    /**
+     * Create a private constructor because no one should ever create a
+     * {@link QueryCanonicalizer} object. This class is only meant to hold static methods.
+     */
+    private QueryCanonicalizer() {
+    }
+
+    /**
+     * Return the canonical search phrase for the text, or an empty string if it has
+     * no words. Canonicalizing a canonical phrase returns it unchanged.
+     */
+    public static String canonicalize(String text) {
+        String folded = fold(text);
+        StringBuilder phrase = new StringBuilder(folded.length());
+        String qualifier = null;
+        int start = -1;
+        for (int i = 0; i <= folded.length(); ) {
+            int codePoint = i < folded.length() ? folded.codePointAt(i) : ' ';
+            if (isWordChar(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String word = folded.substring(start, i);
+                start = -1;
+                if (codePoint == ':' && isQualifier(word + ':')) {
+                    // Applies to the next word, possibly after spaces ("inauthor: tolkien").
+                    qualifier = word + ':';
+                } else {
+                    if (phrase.length() > 0) {
+                        phrase.append('+');
+                    }
+                    if (qualifier != null) {
+                        phrase.append(qualifier);
+                        qualifier = null;
+                    }
+                    phrase.append(word);
+                }
+            }
+            i += Character.charCount(codePoint);
+        }
+        return phrase.toString();
+    }
+
+    /**
+     * Return the text in lower case, with the accents of Latin, Greek and Cyrillic letters
+     * removed and compatibility characters (ligatures, full-width forms) replaced.
+     * Used for both the queries and the book texts they are matched with locally.
+     */
+    public static String fold(String text) {
+        String lowerCase = text.toLowerCase(Locale.US);
+        if (isPlainAscii(lowerCase)) {
+            return lowerCase;
+        }
+        String decomposed = Normalizer.normalize(lowerCase, Normalizer.Form.NFKD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+        // Compose again what was not stripped, e.g. Hangul syllables.
+        return Normalizer.normalize(stripped, Normalizer.Form.NFC);
+    }
+
+    /**
+     * Return the words of the search phrase (canonicalized first) without their
+     * qualifiers, to match books locally.
+     */
+    public static String[] matchWords(String searchPhrase) {
+        ArrayList<String> words = new ArrayList<>();
+        for (String word : canonicalize(searchPhrase).split("\\+")) {
+            int colon = word.indexOf(':');
+            if (colon >= 0) {
+                word = word.substring(colon + 1);
+            }
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Return the canonical phrase encoded as the value of the "q" parameter of a request.
+     */
+    public static String toQueryParameter(String canonicalPhrase) {
+        StringBuilder parameter = new StringBuilder(canonicalPhrase.length());
+        for (String word : canonicalPhrase.split("\\+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (parameter.length() > 0) {
+                parameter.append('+');
+            }
+            try {
+                parameter.append(URLEncoder.encode(word, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                // Every platform supports UTF-8.
+                throw new IllegalStateException(e);
+            }
+        }
+        return parameter.toString();
+    }
+
+    /**
+     * Return true if the character is part of a word: a letter, a digit, or a mark
+     * combined with a letter (like the vowel signs of Indic scripts).
+     */
+    static boolean isWordChar(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    private static boolean isQualifier(String word) {
+        return IN_TITLE.equals(word) || IN_AUTHOR.equals(word);
+    }
+
+    private static boolean isPlainAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.android.booksearch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Predicts the searches the user is likely to make next from the searches made so far,
+ * so their first page can be fetched ahead of time (see {@link #prefetch}).
+ * <p>
+ * Every search phrase has a score which grows by one each time it is searched and decays
+ * by half every {@link #HALF_LIFE_MILLIS}, so a phrase searched often, or recently, ranks
+ * first. Only the {@link #MAX_QUERIES} best phrases are kept. The history is stored in a
+ * small file, read when the predictor is created and written with {@link #write()}.
+ * <p>
+ * All methods are thread-safe.
+ */
+
+public final class QueryPredictor {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(QueryPredictor.class.getSimpleName());
+
+    /**
+     * Time (in milliseconds) after which the weight of a search is halved.
+     */
+    static final long HALF_LIFE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * Number of search phrases remembered.
+     */
+    public static final int MAX_QUERIES = 100;
+
+    /**
+     * Format of the history file, changed whenever the file layout changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Larger files are not histories written by this class, they are not read.
+     */
+    private static final int MAX_FILE_BYTES = 256 * 1024;
+
+    /**
+     * Score of a search phrase, as of the time it was last searched.
+     */
+    private static final class Query {
+        final String phrase;
+        double score;
+        long lastSearchedAt;
+
+        Query(String phrase, double score, long lastSearchedAt) {
+            this.phrase = phrase;
+            this.score = score;
+            this.lastSearchedAt = lastSearchedAt;
+        }
+
+        /**
+         * Return the score decayed until the given time.
+         */
+        double scoreAt(long now) {
+            long age = Math.max(now - lastSearchedAt, 0);
+            return score * Math.pow(0.5, (double) age / HALF_LIFE_MILLIS);
+        }
+    }
+
+    private final File mFile;
+    private final HashMap<String, Query> mQueries = new HashMap<>();
+
+    /**
+     * Serializes writes, which share the temporary file.
+     */
+    private final Object mWriteLock = new Object();
+
+    /**
+     * Create a predictor with the history stored in the file (if it can be read).
+     *
+     * @param file file holding the history, created by {@link #write()} if needed
+     */
+    public QueryPredictor(File file) {
+        mFile = file;
+        read();
+    }
+
+    /**
+     * Record a search made by the user.
+     *
+     * @param searchPhrase search phrase, canonicalized first
+     * @param now          time of the search, in milliseconds since the epoch
+     */
+    public synchronized void record(String searchPhrase, long now) {
+        String phrase = QueryCanonicalizer.canonicalize(searchPhrase);
+        if (phrase.isEmpty()) {
+            return;
+        }
+        Query query = mQueries.get(phrase);
+        if (query == null) {
+            if (mQueries.size() >= MAX_QUERIES) {
+                removeLowest(now);
+            }
+            mQueries.put(phrase, new Query(phrase, 1, now));
+        } else {
+            query.score = query.scoreAt(now) + 1;
+            query.lastSearchedAt = Math.max(query.lastSearchedAt, now);
+        }
+    }
+
+    /**
+     * Return the search phrases most likely to be searched next, best first.
+     *
+     * @param count maximum number of phrases returned
+     * @param now   current time, in milliseconds since the epoch
+     */
+    public synchronized List<String> predict(int count, long now) {
+        List<Query> ranked = rank(now);
+        ArrayList<String> phrases = new ArrayList<>(Math.min(count, ranked.size()));
+        for (int i = 0; i < count && i < ranked.size(); i++) {
+            phrases.add(ranked.get(i).phrase);
+        }
+        return phrases;
+    }
+
+    /**
+     * Fetch the first page of the most likely searches, best first, so they are in the
+     * cache of the client when the user makes them. Pages already fresh in the cache cost
+     * nothing, stale ones are only revalidated. Blocks until done, so it must be called
+     * on a background thread.
+     *
+     * @param client     client to search with, the one used for the user searches
+     * @param count      maximum number of searches prefetched
+     * @param pageSize   number of books per page, the same as the user searches
+     * @param byteBudget no search is started once this many bytes have been received
+     * @param handle     handle used to stop the prefetching from another thread, or null
+     * @return the number of searches prefetched.
+     */
+    public int prefetch(BookSearchClient client, int count, int pageSize, long byteBudget,
+                        FetchHandle handle) {
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        long bytesBefore = metrics.getCount(SearchMetrics.Counter.RESPONSE_BYTES);
+        int prefetched = 0;
+        for (String phrase : predict(count, System.currentTimeMillis())) {
+            long bytesUsed = metrics.getCount(SearchMetrics.Counter.RESPONSE_BYTES) - bytesBefore;
+            if ((handle != null && handle.isCancelled()) || bytesUsed >= byteBudget) {
+                break;
+            }
+            if (client.search(phrase, 0, pageSize, handle) != null) {
+                prefetched++;
+            }
+        }
+        return prefetched;
+    }
+
+    /**
+     * Write the history to the file, replacing the previous one only once it has been
+     * written completely.
+     *
+     * @return true if the history has been written.
+     */
+    public boolean write() {
+        final List<Query> queries;
+        synchronized (this) {
+            queries = new ArrayList<>(mQueries.size());
+            for (Query query : mQueries.values()) {
+                queries.add(new Query(query.phrase, query.score, query.lastSearchedAt));
+            }
+        }
+        synchronized (mWriteLock) {
+            try {
+                FileUtils.writeAtomically(mFile, new FileUtils.Content() {
+                    @Override
+                    public void writeTo(DataOutputStream output) throws IOException {
+                        output.writeInt(FORMAT_VERSION);
+                        output.writeInt(queries.size());
+                        for (Query query : queries) {
+                            output.writeUTF(query.phrase);
+                            output.writeDouble(query.score);
+                            output.writeLong(query.lastSearchedAt);
+                        }
+                    }
+                });
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Problem writing the query history " + mFile, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Read the history from the file, if there is one.
+     */
+    private void read() {
+        try {
+            DataInputStream data = FileUtils.readFully(mFile, MAX_FILE_BYTES);
+            if (data == null) {
+                return;
+            }
+            int version = data.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown history format " + version);
+            }
+            HashMap<String, Query> queries = new HashMap<>();
+            for (int i = data.readInt(); i > 0; i--) {
+                Query query = new Query(data.readUTF(), data.readDouble(), data.readLong());
+                queries.put(query.phrase, query);
+            }
+            synchronized (this) {
+                mQueries.putAll(queries);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the query history " + mFile, e);
+        }
+    }
+
+    /**
+     * Return the queries sorted by their score at the given time, best first.
+     */
+    private List<Query> rank(final long now) {
+        final HashMap<Query, Double> scores = new HashMap<>();
+        for (Query query : mQueries.values()) {
+            scores.put(query, query.scoreAt(now));
+        }
+        ArrayList<Query> ranked = new ArrayList<>(mQueries.values());
+        Collections.sort(ranked, new Comparator<Query>() {
+            @Override
+            public int compare(Query a, Query b) {
+                return Double.compare(scores.get(b), scores.get(a));
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * Forget the query with the lowest score at the given time, to make room for a new one.
+     */
+    private void removeLowest(long now) {
+        Query lowest = null;
+        double lowestScore = Double.MAX_VALUE;
+        for (Query query : mQueries.values()) {
+            double score = query.scoreAt(now);
+            if (score < lowestScore) {
+                lowest = query;
+                lowestScore = score;
+            }
+        }
+        if (lowest != null) {
+            mQueries.remove(lowest.phrase);
+        }
+    }
+}
@@ -0,0 +1,691 @@
+package com.example.android.booksearch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helper methods related to requesting and receiving books data from Google Books API.
+ */
+
+public final class QueryUtils {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(QueryUtils.class.getSimpleName());
+
+    /**
+     * Largest response body (in bytes, decompressed) which is parsed. A page of results
+     * is a few dozen kilobytes, anything much larger is not a page of results.
+     */
+    static final int MAX_BODY_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Largest part (in bytes) of an error body read to find why the request was refused.
+     */
+    private static final int MAX_ERROR_BYTES = 4096;
+
+    /**
+     * Decodes the body of a successful response, read from the stream as it arrives.
+     */
+    private interface BodyParser<T> {
+        T parse(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Parser of the pages of search results.
+     */
+    private static final BodyParser<ArrayList<Book>> BOOKS_PARSER =
+            new BodyParser<ArrayList<Book>>() {
+        @Override
+        public ArrayList<Book> parse(InputStream inputStream) throws IOException {
+            ArrayList<Book> books = BookStreamParser.parse(inputStream, MAX_BODY_BYTES);
+            SearchMetrics.getInstance().add(SearchMetrics.Counter.ITEMS, books.size());
+            return books;
+        }
+    };
+
+    /**
+     * Parser of single volumes.
+     */
+    private static final BodyParser<BookDetail> DETAIL_PARSER = new BodyParser<BookDetail>() {
+        @Override
+        public BookDetail parse(InputStream inputStream) throws IOException {
+            return BookStreamParser.parseDetail(inputStream, MAX_BODY_BYTES);
+        }
+    };
+
+    /**
+     * Create a private constructor because no one should ever create a {@link QueryUtils} object.
+     * This class is only meant to hold static variables and methods, which can be accessed
+     * directly from the class name QueryUtils (and an object instance of QueryUtils is not needed).
+     */
+    private QueryUtils() {
+    }
+
+    /**
+     * Query the Books API and return an {@link ArrayList<Book>} object to represent
+     * books to show to the user.
+     */
+    public static ArrayList<Book> fetchBookData(String requestUrl) {
+        return fetchBookData(requestUrl, null, null, null);
+    }
+
+    /**
+     * Query the Books API through the given {@link BookCache} and return an
+     * {@link ArrayList<Book>} object to represent books to show to the user.
+     * <p>
+     * A fresh cached result is returned without any network traffic. A stale one is
+     * revalidated with its ETag, and is also used as a fallback if the request fails.
+     *
+     * @param requestUrl the full request URL
+     * @param cache      the cache to use, or null to always query the server
+     * @param cacheKey   the key identifying the search phrase and page in the cache
+     * @param handle     handle used to cancel the request from another thread, or null
+     * @return the books found (an empty list if there are none), or null if the request
+     * failed or it has been cancelled.
+     */
+    public static ArrayList<Book> fetchBookData(String requestUrl, BookCache cache,
+                                                String cacheKey, FetchHandle handle) {
+        return fetchBookData(requestUrl, cache, cacheKey, handle, null);
+    }
+
+    /**
+     * Query the Books API like {@link #fetchBookData(String, BookCache, String, FetchHandle)},
+     * waiting for the rate limiter before a request is actually sent.
+     *
+     * @param rateLimiter limiter of the requests sent to the host, or null for no limit
+     */
+    public static ArrayList<Book> fetchBookData(String requestUrl, BookCache cache,
+                                                String cacheKey, FetchHandle handle,
+                                                HostRateLimiter rateLimiter) {
+        return fetchBookData(requestUrl, cache, cacheKey, handle, rateLimiter, null);
+    }
+
+    /**
+     * Query the Books API like
+     * {@link #fetchBookData(String, BookCache, String, FetchHandle, HostRateLimiter)},
+     * retrying, hedging and timing out the request as the {@link FetchPolicy} decides.
+     *
+     * @param policy policy of the request, or null to make a single attempt with the
+     *               default timeouts
+     */
+    public static ArrayList<Book> fetchBookData(String requestUrl, BookCache cache,
+                                                String cacheKey, FetchHandle handle,
+                                                HostRateLimiter rateLimiter,
+                                                FetchPolicy policy) {
+        long start = System.nanoTime();
+        try {
+            return fetch(requestUrl, cache, cacheKey, handle, rateLimiter, policy);
+        } finally {
+            SearchMetrics.getInstance().record(
+                    SearchMetrics.Phase.FETCH, System.nanoTime() - start);
+        }
+    }
+
+    private static ArrayList<Book> fetch(String requestUrl, BookCache cache, String cacheKey,
+                                         FetchHandle handle, HostRateLimiter rateLimiter,
+                                         FetchPolicy policy) {
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        BookCache.Entry cached = null;
+        if (cache != null) {
+            long lookupStart = System.nanoTime();
+            cached = cache.get(cacheKey);
+            metrics.record(SearchMetrics.Phase.CACHE_LOOKUP, System.nanoTime() - lookupStart);
+            if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+                metrics.increment(SearchMetrics.Counter.CACHE_HITS);
+                // Hand out a copy, the adapter modifies the list it is given.
+                return new ArrayList<>(cached.books);
+            }
+            metrics.increment(cached != null
+                    ? SearchMetrics.Counter.CACHE_STALE_HITS : SearchMetrics.Counter.CACHE_MISSES);
+        }
+
+        // Create URL object
+        URL url = createUrl(requestUrl);
+
+        // Perform HTTP request to the URL and parse the JSON response as it is received
+        Response<ArrayList<Book>> response = request(url, cached != null ? cached.etag : null,
+                handle, rateLimiter, policy, BOOKS_PARSER);
+
+        // Results of a cancelled request are incomplete, don't return or cache them.
+        if (handle != null && handle.isCancelled()) {
+            return null;
+        }
+
+        if (response != null && response.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                && cached != null) {
+            cached = cache.revalidated(cacheKey, cached);
+            return new ArrayList<>(cached.books);
+        }
+        if (response != null && response.body != null) {
+            if (cache != null) {
+                cache.put(cacheKey, response.body, response.etag);
+            }
+            // Return the {@link ArrayList<Book>}
+            return response.body;
+        }
+        if (cached != null
+                && (response == null || response.responseCode != HttpURLConnection.HTTP_OK)) {
+            // The server could not be reached, a stale result is better than none.
+            return new ArrayList<>(cached.books);
+        }
+        return null;
+    }
+
+    /**
+     * Query the Books API for the details of a single volume through the given
+     * {@link BookDetailCache}, like the pages of results: fresh cached details are returned
+     * without any network traffic, stale ones are revalidated with their ETag, and used
+     * if the request fails.
+     *
+     * @param requestUrl  the full request URL of the volume
+     * @param cache       the cache to use, or null to always query the server
+     * @param volumeId    the id of the volume
+     * @param handle      handle used to cancel the request from another thread, or null
+     * @param rateLimiter limiter of the requests sent to the host, or null for no limit
+     * @param policy      policy of the request, or null to make a single attempt
+     * @return the details, or null if the volume was not found, the request failed or
+     * it has been cancelled.
+     */
+    public static BookDetail fetchBookDetail(String requestUrl, BookDetailCache cache,
+                                             String volumeId, FetchHandle handle,
+                                             HostRateLimiter rateLimiter, FetchPolicy policy) {
+        BookDetailCache.Entry cached = cache != null ? cache.get(volumeId) : null;
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            return cached.detail;
+        }
+
+        Response<BookDetail> response = request(createUrl(requestUrl),
+                cached != null ? cached.etag : null, handle, rateLimiter, policy,
+                DETAIL_PARSER);
+        if (handle != null && handle.isCancelled()) {
+            return null;
+        }
+        if (response != null && response.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                && cached != null) {
+            return cache.revalidated(cached).detail;
+        }
+        if (response != null && response.body != null) {
+            if (cache != null) {
+                cache.put(response.body, response.etag);
+            }
+            return response.body;
+        }
+        if (cached != null
+                && (response == null || response.responseCode != HttpURLConnection.HTTP_OK)) {
+            return cached.detail;
+        }
+        return null;
+    }
+
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.SEVERE, "Error with creating URL ", e);
+        }
+        return url;
+    }
+
+    /**
+     * Result of a single HTTP request: the response code, the books (or details) decoded
+     * from the body, if any, and the ETag to revalidate them with.
+     */
+    private static final class Response<T> {
+        int responseCode;
+        T body;
+        String etag;
+
+        /**
+         * True if no complete response was received (network error or malformed body).
+         */
+        boolean failed;
+
+        /**
+         * Delay (in milliseconds) the server asked for before the next request, or -1.
+         */
+        long retryAfterMillis = -1;
+
+        /**
+         * True if the server refused the request because of the rate of requests ("429
+         * Too Many Requests", or a 403 "rateLimitExceeded").
+         */
+        boolean rateLimited;
+
+        /**
+         * True if the server refused the request because the daily quota is used up.
+         */
+        boolean quotaExceeded;
+
+        /**
+         * True if the attempt has not been sent: the rate limiter shed it, or it has been
+         * cancelled while waiting. Only used by hedged attempts.
+         */
+        boolean notSent;
+
+        /**
+         * Return true if sending the request again may give a better response.
+         */
+        boolean isRetryable() {
+            return failed || FetchPolicy.isRetryable(responseCode);
+        }
+    }
+
+    /**
+     * Send the request, with as many attempts as the policy allows.
+     *
+     * @return the response of the last attempt, or null if the URL is null or the request
+     * has been cancelled or shed.
+     */
+    private static <T> Response<T> request(URL url, String etag, FetchHandle handle,
+                                           HostRateLimiter rateLimiter, FetchPolicy policy,
+                                           BodyParser<T> parser) {
+        // If the URL is null, then return early.
+        if (url == null) {
+            return null;
+        }
+        if (policy == null) {
+            return attempt(url, etag, handle, rateLimiter, null, parser);
+        }
+
+        for (int retry = 1; ; retry++) {
+            Response<T> response = policy.isHedging()
+                    ? hedgedAttempt(url, etag, handle, rateLimiter, policy, parser)
+                    : attempt(url, etag, handle, rateLimiter, policy, parser);
+            if (response == null || (handle != null && handle.isCancelled())) {
+                return null;
+            }
+            if (!response.isRetryable()) {
+                return response;
+            }
+            long backoffMillis = policy.getBackoffMillis(retry, response.retryAfterMillis);
+            if (backoffMillis < 0) {
+                return response;
+            }
+            SearchMetrics.getInstance().increment(SearchMetrics.Counter.RETRIES);
+            if (!FetchPolicy.sleep(backoffMillis, handle)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Make a single attempt at the request, once the rate limiter lets it through.
+     *
+     * @return the response, or null if the request has been cancelled or shed.
+     */
+    private static <T> Response<T> attempt(URL url, String etag, FetchHandle handle,
+                                           HostRateLimiter rateLimiter, FetchPolicy policy,
+                                           BodyParser<T> parser) {
+        // Cached results are not limited, only requests to the server are.
+        if (rateLimiter != null && !rateLimiter.acquire(url.getHost(), handle)) {
+            return null;
+        }
+        Response<T> response = makeHttpRequest(url, etag, handle, policy, parser);
+        if (rateLimiter != null && response != null) {
+            // Requests of the other threads are held back as well.
+            if (response.quotaExceeded) {
+                rateLimiter.quotaExceeded(url.getHost());
+            } else if (response.rateLimited) {
+                rateLimiter.pause(url.getHost(), response.retryAfterMillis);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Make an attempt at the request on the hedge executor, and a second one if the first
+     * is still running after the hedge delay. The first usable response wins and the other
+     * attempt is cancelled.
+     *
+     * @return the winning response (or the last failed one), or null if the request has
+     * been cancelled or shed.
+     */
+    private static <T> Response<T> hedgedAttempt(URL url, String etag, FetchHandle handle,
+                                                 HostRateLimiter rateLimiter,
+                                                 FetchPolicy policy, BodyParser<T> parser) {
+        BlockingQueue<Response<T>> responses = new LinkedBlockingQueue<>();
+        // The attempts keep the lane of the request, for its priority and its budget.
+        HostRateLimiter.Lane lane =
+                handle != null ? handle.getLane() : HostRateLimiter.Lane.INTERACTIVE;
+        FetchHandle[] attempts = {new FetchHandle(lane), new FetchHandle(lane)};
+        long hedgeAt = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(policy.getHedgeDelayMillis());
+        int maxStarted = attempts.length;
+        int started = 0;
+        int finished = 0;
+        try {
+            try {
+                startAttempt(url, etag, attempts[started], rateLimiter, policy, parser,
+                        responses);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(Level.WARNING, "No thread for the request, making it directly", e);
+                return attempt(url, etag, handle, rateLimiter, policy, parser);
+            }
+            started++;
+            while (true) {
+                if (handle != null && handle.isCancelled()) {
+                    return null;
+                }
+                long waitNanos =
+                        TimeUnit.MILLISECONDS.toNanos(HostRateLimiter.MAX_SLEEP_MILLIS);
+                if (started < maxStarted) {
+                    long untilHedge = hedgeAt - System.nanoTime();
+                    if (untilHedge <= 0) {
+                        try {
+                            startAttempt(url, etag, attempts[started], rateLimiter, policy,
+                                    parser, responses);
+                            SearchMetrics.getInstance().increment(SearchMetrics.Counter.HEDGES);
+                            started++;
+                        } catch (RejectedExecutionException e) {
+                            // No thread to spare, keep waiting for the first attempt only.
+                            maxStarted = started;
+                        }
+                        continue;
+                    }
+                    waitNanos = Math.min(waitNanos, untilHedge);
+                }
+                Response<T> response = responses.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (response == null) {
+                    continue;
+                }
+                finished++;
+                if (response.notSent) {
+                    // Not worth retrying, unless the other attempt is still running.
+                    if (finished == started) {
+                        return null;
+                    }
+                    continue;
+                }
+                // A failed attempt only ends the wait if no other attempt is running.
+                if (!response.isRetryable() || finished == started) {
+                    return response;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            for (FetchHandle attempt : attempts) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    /**
+     * Run an attempt on the hedge executor, adding its response to the queue.
+     */
+    private static <T> void startAttempt(final URL url, final String etag,
+                                         final FetchHandle attemptHandle,
+                                         final HostRateLimiter rateLimiter,
+                                         final FetchPolicy policy,
+                                         final BodyParser<T> parser,
+                                         final BlockingQueue<Response<T>> responses) {
+        policy.getHedgeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Response<T> response =
+                        attempt(url, etag, attemptHandle, rateLimiter, policy, parser);
+                if (response == null) {
+                    // Shed or cancelled by the rate limiter, or cancelled while connecting.
+                    response = new Response<>();
+                    response.notSent = true;
+                }
+                responses.add(response);
+            }
+        });
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return the {@link Book}s (or whatever the
+     * parser reads) decoded directly from the response stream.
+     *
+     * @param etag   ETag of a previously received response, sent as "If-None-Match"
+     *               so the server can answer "304 Not Modified" instead of the body.
+     * @param handle handle the connection is registered with, so it can be aborted.
+     * @param policy policy giving the timeouts and learning the latencies, or null
+     * @param parser parser of the body of a successful response
+     */
+    private static <T> Response<T> makeHttpRequest(URL url, String etag, FetchHandle handle,
+                                                   FetchPolicy policy, BodyParser<T> parser) {
+        long attemptStart = System.nanoTime();
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        metrics.increment(SearchMetrics.Counter.REQUESTS);
+        Response<T> response = new Response<>();
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        boolean completed = false;
+        try {
+            urlConnection = policy != null
+                    ? HttpConnections.openGet(url, policy.getConnectTimeoutMillis(),
+                    policy.getReadTimeoutMillis())
+                    : HttpConnections.openGet(url);
+            if (handle != null && !handle.attach(urlConnection)) {
+                return null;
+            }
+            if (etag != null) {
+                urlConnection.setRequestProperty("If-None-Match", etag);
+            }
+            long connectStart = System.nanoTime();
+            urlConnection.connect();
+            long requestStart = System.nanoTime();
+            long connectNanos = requestStart - connectStart;
+            metrics.record(SearchMetrics.Phase.CONNECT, connectNanos);
+            response.responseCode = urlConnection.getResponseCode();
+            long firstByteNanos = System.nanoTime() - requestStart;
+            metrics.record(SearchMetrics.Phase.FIRST_BYTE, firstByteNanos);
+
+            // If the request was successful (response code 200),
+            // then parse the input stream while it is being read.
+            if (response.responseCode == HttpURLConnection.HTTP_OK) {
+                response.etag = urlConnection.getHeaderField("ETag");
+                if (urlConnection.getContentLength() > MAX_BODY_BYTES) {
+                    // Not worth downloading, whatever it is.
+                    throw new Utf8Reader.BodyTooLargeException(MAX_BODY_BYTES);
+                }
+                MeteredInputStream wire = new MeteredInputStream(urlConnection.getInputStream());
+                inputStream = HttpConnections.decode(urlConnection, wire);
+                long parseStart = System.nanoTime();
+                response.body = parser.parse(inputStream);
+                long parseNanos = System.nanoTime() - parseStart;
+
+                // Reading and parsing are interleaved: the time blocked on the network
+                // is the reading part, the rest is decompressing and parsing.
+                metrics.record(SearchMetrics.Phase.BODY_READ, wire.getReadNanos());
+                metrics.record(SearchMetrics.Phase.PARSE, parseNanos - wire.getReadNanos());
+                metrics.recordResponseSize(wire.getBytes());
+            } else if (response.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                metrics.increment(SearchMetrics.Counter.NOT_MODIFIED);
+            } else {
+                metrics.increment(SearchMetrics.Counter.ERRORS);
+                response.retryAfterMillis = FetchPolicy.parseRetryAfter(urlConnection);
+                if (response.responseCode == HttpURLConnection.HTTP_FORBIDDEN
+                        || response.responseCode == 429) {
+                    // The reason is in the error body, e.g. "dailyLimitExceeded".
+                    InputStream errorStream = urlConnection.getErrorStream();
+                    if (errorStream != null) {
+                        inputStream = HttpConnections.decode(urlConnection, errorStream);
+                        String error = readError(inputStream);
+                        response.quotaExceeded = error.contains("dailyLimitExceeded")
+                                || error.contains("quotaExceeded");
+                        response.rateLimited = response.responseCode == 429
+                                || error.contains("RateLimitExceeded")
+                                || error.contains("rateLimitExceeded");
+                    } else {
+                        response.rateLimited = response.responseCode == 429;
+                    }
+                }
+                LOGGER.severe("Error response code: " + response.responseCode);
+            }
+            completed = true;
+            if (policy != null && !response.isRetryable()) {
+                policy.recordSuccess(connectNanos, firstByteNanos,
+                        System.nanoTime() - attemptStart);
+            }
+        } catch (Utf8Reader.BodyTooLargeException e) {
+            // The server would send the same again, it is not retried.
+            metrics.increment(SearchMetrics.Counter.ERRORS);
+            LOGGER.log(Level.SEVERE, "Response body rejected.", e);
+            response.body = null;
+        } catch (IOException e) {
+            // Malformed JSON is reported as an IOException by the streaming parser.
+            // Aborting a cancelled request also ends up here, so don't report it.
+            if (handle == null || !handle.isCancelled()) {
+                metrics.increment(SearchMetrics.Counter.ERRORS);
+                LOGGER.log(Level.SEVERE, "Problem retrieving the JSON results.", e);
+            }
+            response.body = null;
+            response.failed = true;
+        } finally {
+            if (handle != null) {
+                handle.detach();
+            }
+            if (urlConnection != null) {
+                if (completed) {
+                    // Keep the connection alive for the next request to the same host.
+                    HttpConnections.release(urlConnection, inputStream);
+                } else {
+                    urlConnection.disconnect();
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Return the beginning of an error body, which is small JSON ("error" with its
+     * "reason"s), as text.
+     */
+    private static String readError(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[MAX_ERROR_BYTES];
+        int length = 0;
+        int read;
+        while (length < buffer.length
+                && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return new String(buffer, 0, length, "UTF-8");
+    }
+
+    /**
+     * Return an {@link ArrayList<Book>} , a list of {@link Book} objects
+     * that has been built up from parsing the input bookJSON string response.
+     * <p>
+     * Network responses are parsed by {@link BookStreamParser} without building the whole
+     * String first. This DOM-based version stays as the reference implementation the
+     * streaming parser is checked against.
+     */
+    static ArrayList<Book> extractBooksFromJson(String bookJSON) {
+        // If the JSON string is empty or null, then return early.
+        if (bookJSON == null || bookJSON.isEmpty()) {
+            return null;
+        }
+
+        // Create an empty ArrayList that we can start adding books to
+        ArrayList<Book> books = new ArrayList<>();
+
+        // Try to parse the JSON response string. If there's a problem with the way the JSON
+        // is formatted, a JSONException exception object will be thrown.
+        // Catch the exception so the app doesn't crash, and print the error message to the logs.
+        try {
+
+            // Parse the response given by bookJSON string and
+            // build up a list of Book objects with the corresponding data.
+            JSONObject rootJsonResponse = new JSONObject(bookJSON);
+
+            // Check if any book has been found (JSONObject should contain array "items").
+            // If there was none search results, stop parsing.
+            if (rootJsonResponse.isNull("items")) {
+                return books;
+            }
+
+            // Extract the JSONArray associated with the key called "items",
+            // which represents a list of items (books).
+            JSONArray bookItemsArray = rootJsonResponse.optJSONArray("items");
+
+            // For each book in the bookArray, create a {@link Book} object
+            for (int i = 0; i < bookItemsArray.length(); i++) {
+
+                // Get a single book at position i within the list of books
+                JSONObject currentBook = bookItemsArray.optJSONObject(i);
+
+                // The volume id identifies the same book across searches.
+                String id = currentBook.optString("id", null);
+
+                // For a given book, extract the JSONObject associated with the
+                // key called "volumeInfo", which represents a list of all volumeInfo
+                // for that book.
+                JSONObject volumeInfo = currentBook.optJSONObject("volumeInfo");
+
+                // Extract the values for the keys called "title", "authors" (an array),
+                // "publisher", "publishedDate" and "imageLinks" (a JSONObject containing
+                // "thumbnail" key with cover's URL).
+                String title = volumeInfo.optString("title");
+
+                // Not every JSON response contains authors array:
+                ArrayList<String> authors = new ArrayList<>();
+                if (!volumeInfo.isNull("authors")) {
+                    JSONArray authorsArray = volumeInfo.getJSONArray("authors");
+                    for (int j = 0; j < authorsArray.length(); j++) {
+                        authors.add(authorsArray.getString(j));
+                    }
+                }
+
+                // Not every JSON response contains publisher name:
+                String publisher = volumeInfo.optString("publisher", null);
+
+                // Not every JSON response contains a cover thumbnail:
+                String thumbnailUrl = null;
+                JSONObject imageLinks = volumeInfo.optJSONObject("imageLinks");
+                if (imageLinks != null) {
+                    thumbnailUrl = imageLinks.optString("thumbnail", null);
+                    if (thumbnailUrl == null) {
+                        thumbnailUrl = imageLinks.optString("smallThumbnail", null);
+                    }
+                }
+
+                // Not every JSON response contains publishedDate information:
+                String publishedDate = null;
+                if (!volumeInfo.isNull("publishedDate")) {
+                    publishedDate = volumeInfo.getString("publishedDate");
+                }
+
+                // Create a new {@link Book} object with the title, authors,
+                // publishing info and cover from the JSON response.
+                Book nextBookObject = new Book(id, title, authors, publisher, publishedDate,
+                        BookStreamParser.secureUrl(thumbnailUrl));
+
+                // Add the new {@link Book} to the list of books.
+                books.add(nextBookObject);
+            }
+            // Return the list of books {@link ArrayList<Book>}
+            return books;
+
+        } catch (JSONException e) {
+            // If an error is thrown when executing any of the above statements in the "try" block,
+            // catch the exception here, so the app doesn't crash. Print a log message
+            // with the message from the exception.
+            LOGGER.log(Level.SEVERE, "Problem parsing the book JSON results", e);
+        }
+        return null;
+    }
+}
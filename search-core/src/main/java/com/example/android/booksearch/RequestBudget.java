@@ -0,0 +1,285 @@
+package com.example.android.booksearch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the daily quota of requests of the Books API, so background work never
+ * uses up the requests the user needs.
+ * <p>
+ * Every {@link HostRateLimiter.Lane} may only send requests until the requests of all lanes
+ * reach its share of the quota: prefetching stops at half of it, batches and paging a bit
+ * later, and searches of the user can use all of it. Requests which are not sent are
+ * answered from the cache by {@link QueryUtils}. Once the server says the quota is used up,
+ * no more requests are sent until the quota is reset, at midnight Pacific time.
+ * <p>
+ * The counters are written to a file every few requests (and by {@link #write()}), so
+ * they survive the app being restarted during the day.
+ */
+
+public final class RequestBudget {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(RequestBudget.class.getSimpleName());
+
+    /**
+     * Version of the file format. Files with a different version are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Number of requests counted between two writes of the file.
+     */
+    private static final int WRITE_EVERY = 10;
+
+    /**
+     * Larger files are not written by this class, they are not read.
+     */
+    private static final int MAX_FILE_BYTES = 4 * 1024;
+
+    /**
+     * Time zone of the day of the quota: Google API quotas are reset at midnight there.
+     */
+    private static final TimeZone QUOTA_TIME_ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final File mFile;
+    private final int mDailyQuota;
+
+    /**
+     * Day the counters belong to, in days since the epoch in the quota time zone.
+     */
+    private long mDay;
+
+    /**
+     * Requests sent today, by lane.
+     */
+    private final int[] mUsed = new int[HostRateLimiter.Lane.values().length];
+
+    /**
+     * True once the server said the quota of the day is used up.
+     */
+    private boolean mExhausted;
+
+    /**
+     * Requests counted since the file was last written.
+     */
+    private int mUnwritten;
+
+    /**
+     * True after a write failed, so the next request counted writes the file again.
+     */
+    private boolean mWriteFailed;
+
+    /**
+     * Serializes writes, which share the temporary file, in the order of their copies of
+     * the counters.
+     */
+    private final Object mWriteLock = new Object();
+
+    /**
+     * Create a budget with the counters stored in the file (if it can be read).
+     *
+     * @param file       file holding the counters, created by {@link #write()} if needed
+     * @param dailyQuota number of requests allowed per day
+     */
+    public RequestBudget(File file, int dailyQuota) {
+        if (dailyQuota < 1) {
+            throw new IllegalArgumentException("Invalid daily quota " + dailyQuota);
+        }
+        mFile = file;
+        mDailyQuota = dailyQuota;
+        read();
+    }
+
+    /**
+     * Return the share of the daily quota requests of the lane may use, counting the
+     * requests of every lane.
+     */
+    static double getShare(HostRateLimiter.Lane lane) {
+        switch (lane) {
+            case INTERACTIVE:
+                return 1.0;
+            case PAGING:
+                return 0.9;
+            case BATCH:
+                return 0.75;
+            default:
+                return 0.5;
+        }
+    }
+
+    /**
+     * Return true if a request of the lane may be sent, without counting it.
+     */
+    public synchronized boolean allows(HostRateLimiter.Lane lane, long now) {
+        rollOver(now);
+        return !mExhausted && getUsed() < getShare(lane) * mDailyQuota;
+    }
+
+    /**
+     * Count a request of the lane if it may be sent.
+     *
+     * @param now current time, in milliseconds since the epoch
+     * @return false if the budget of the lane is used up, and the request should not
+     * be sent.
+     */
+    public boolean tryAcquire(HostRateLimiter.Lane lane, long now) {
+        synchronized (this) {
+            if (!allows(lane, now)) {
+                return false;
+            }
+            mUsed[lane.ordinal()]++;
+            if (++mUnwritten < WRITE_EVERY && !mWriteFailed) {
+                return true;
+            }
+        }
+        write();
+        return true;
+    }
+
+    /**
+     * Stop sending requests until the quota is reset, after the server said it is
+     * used up.
+     */
+    public void markExhausted(long now) {
+        synchronized (this) {
+            rollOver(now);
+            if (mExhausted) {
+                return;
+            }
+            mExhausted = true;
+        }
+        LOGGER.warning("Daily quota of requests used up");
+        write();
+    }
+
+    /**
+     * Return the number of requests of the lane sent today.
+     */
+    public synchronized int getUsed(HostRateLimiter.Lane lane, long now) {
+        rollOver(now);
+        return mUsed[lane.ordinal()];
+    }
+
+    /**
+     * Return the number of requests which may still be sent today by the user searches.
+     */
+    public synchronized int getRemaining(long now) {
+        rollOver(now);
+        return mExhausted ? 0 : Math.max(mDailyQuota - getUsed(), 0);
+    }
+
+    private int getUsed() {
+        int used = 0;
+        for (int lane : mUsed) {
+            used += lane;
+        }
+        return used;
+    }
+
+    /**
+     * Reset the counters if the quota has been reset since they were counted.
+     */
+    private void rollOver(long now) {
+        long day = dayOf(now);
+        if (day != mDay) {
+            mDay = day;
+            Arrays.fill(mUsed, 0);
+            mExhausted = false;
+        }
+    }
+
+    /**
+     * Return the day of the quota the time belongs to.
+     */
+    static long dayOf(long now) {
+        return (now + QUOTA_TIME_ZONE.getOffset(now)) / DAY_MILLIS;
+    }
+
+    /**
+     * Write the counters to the file, replacing it only once the new one has been
+     * written completely.
+     *
+     * @return true if the counters have been written.
+     */
+    public boolean write() {
+        // The counters are copied under the write lock, so an older copy is never written
+        // after a newer one.
+        synchronized (mWriteLock) {
+            final long day;
+            final boolean exhausted;
+            final int[] used;
+            int unwritten;
+            synchronized (this) {
+                day = mDay;
+                exhausted = mExhausted;
+                used = mUsed.clone();
+                unwritten = mUnwritten;
+                // Requests counted while writing trigger no other write.
+                mUnwritten = 0;
+                mWriteFailed = false;
+            }
+            try {
+                FileUtils.writeAtomically(mFile, new FileUtils.Content() {
+                    @Override
+                    public void writeTo(DataOutputStream output) throws IOException {
+                        output.writeInt(FORMAT_VERSION);
+                        output.writeLong(day);
+                        output.writeBoolean(exhausted);
+                        output.writeInt(used.length);
+                        for (int count : used) {
+                            output.writeInt(count);
+                        }
+                    }
+                });
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Problem writing the request budget " + mFile, e);
+                synchronized (this) {
+                    mUnwritten += unwritten;
+                    mWriteFailed = true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Read the counters from the file, if there is one. Lanes unknown to the file are
+     * counted from 0.
+     */
+    private void read() {
+        try {
+            DataInputStream input = FileUtils.readFully(mFile, MAX_FILE_BYTES);
+            if (input == null || input.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            long day = input.readLong();
+            boolean exhausted = input.readBoolean();
+            int lanes = input.readInt();
+            int[] used = new int[mUsed.length];
+            for (int i = 0; i < lanes; i++) {
+                int count = input.readInt();
+                if (i < used.length) {
+                    used[i] = count;
+                }
+            }
+            mDay = day;
+            mExhausted = exhausted;
+            System.arraycopy(used, 0, mUsed, 0, used.length);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the request budget " + mFile, e);
+        }
+    }
+}
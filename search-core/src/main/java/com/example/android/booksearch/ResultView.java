@@ -0,0 +1,241 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * How a list of results is shown: in which order, restricted to which publication years or
+ * publisher, and whether the books of the same publisher are grouped together.
+ * <p>
+ * Views are immutable, and {@link #apply(List)} does not change the given list, so it can
+ * run on a background thread over every page loaded so far while the UI keeps showing the
+ * previous list. The sort keys of every book are computed once per call (the dates are
+ * already parsed by {@link Book#getPublishedDateKey()}), so the comparisons only compare
+ * numbers and folded strings, and thousands of books are sorted in milliseconds.
+ */
+
+public final class ResultView {
+
+    /**
+     * Orders the results can be shown in.
+     */
+    public enum Sort {
+        /**
+         * Order of the Books API (its relevance), the books are not sorted.
+         */
+        RELEVANCE,
+        /**
+         * Most recently published first.
+         */
+        DATE_NEWEST,
+        /**
+         * Earliest published first.
+         */
+        DATE_OLDEST,
+        /**
+         * Alphabetically by the authors.
+         */
+        AUTHOR,
+        /**
+         * Alphabetically by the publisher.
+         */
+        PUBLISHER
+    }
+
+    /**
+     * The results as they come from the Books API.
+     */
+    public static final ResultView DEFAULT = new ResultView(Sort.RELEVANCE, 0, 0, null, false);
+
+    private final Sort mSort;
+    private final int mFromYear;
+    private final int mToYear;
+    private final String mPublisher;
+    private final boolean mGroupByPublisher;
+
+    private ResultView(Sort sort, int fromYear, int toYear, String publisher,
+                       boolean groupByPublisher) {
+        mSort = sort;
+        mFromYear = fromYear;
+        mToYear = toYear;
+        mPublisher = publisher;
+        mGroupByPublisher = groupByPublisher;
+    }
+
+    public Sort getSort() {
+        return mSort;
+    }
+
+    public boolean isGroupedByPublisher() {
+        return mGroupByPublisher;
+    }
+
+    /**
+     * Return true if the view shows the results unchanged.
+     */
+    public boolean isDefault() {
+        return mSort == Sort.RELEVANCE && !hasFilter() && !mGroupByPublisher;
+    }
+
+    /**
+     * Return a copy of this view with the given order.
+     */
+    public ResultView withSort(Sort sort) {
+        return new ResultView(sort, mFromYear, mToYear, mPublisher, mGroupByPublisher);
+    }
+
+    /**
+     * Return a copy of this view showing only the books published between the given
+     * years (inclusive), or every book if both are 0. Books without a known date are
+     * left out by a range.
+     *
+     * @param fromYear first year shown, or 0 for no lower bound
+     * @param toYear   last year shown, or 0 for no upper bound
+     */
+    public ResultView withYears(int fromYear, int toYear) {
+        return new ResultView(mSort, fromYear, toYear, mPublisher, mGroupByPublisher);
+    }
+
+    /**
+     * Return a copy of this view showing only the books of the publisher (compared
+     * ignoring case and accents), or every book if it is null.
+     */
+    public ResultView withPublisher(String publisher) {
+        return new ResultView(mSort, mFromYear, mToYear,
+                publisher != null ? QueryCanonicalizer.fold(publisher) : null,
+                mGroupByPublisher);
+    }
+
+    /**
+     * Return a copy of this view which shows the books of the same publisher next to each
+     * other (publishers in alphabetical order, books in the view order within each one).
+     */
+    public ResultView withGroupByPublisher(boolean groupByPublisher) {
+        return new ResultView(mSort, mFromYear, mToYear, mPublisher, groupByPublisher);
+    }
+
+    /**
+     * Return the books shown by this view, in the order they are shown. Books with equal
+     * sort keys (or no key, which come last) keep their order of relevance.
+     *
+     * @param books every loaded result, in the order of the Books API
+     */
+    public ArrayList<Book> apply(List<Book> books) {
+        if (isDefault()) {
+            return new ArrayList<>(books);
+        }
+        ArrayList<Entry> entries = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (hasFilter() && !accepts(book)) {
+                continue;
+            }
+            entries.add(new Entry(book, mSort, mGroupByPublisher));
+        }
+        Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+        if (mSort != Sort.RELEVANCE || mGroupByPublisher) {
+            // A stable sort, equal books stay in the order of relevance.
+            Arrays.sort(sorted, new EntryComparator(mSort, mGroupByPublisher));
+        }
+        ArrayList<Book> result = new ArrayList<>(sorted.length);
+        for (Entry entry : sorted) {
+            result.add(entry.book);
+        }
+        return result;
+    }
+
+    private boolean hasFilter() {
+        return mFromYear != 0 || mToYear != 0 || mPublisher != null;
+    }
+
+    private boolean accepts(Book book) {
+        if (mFromYear != 0 || mToYear != 0) {
+            int year = book.getPublishedDateKey() / 10000;
+            if (year == 0 || (mFromYear != 0 && year < mFromYear)
+                    || (mToYear != 0 && year > mToYear)) {
+                return false;
+            }
+        }
+        return mPublisher == null || (book.getPublisher() != null
+                && mPublisher.equals(QueryCanonicalizer.fold(book.getPublisher())));
+    }
+
+    /**
+     * A book with the keys it is sorted by.
+     */
+    private static final class Entry {
+        final Book book;
+        final int dateKey;
+        final String textKey;
+        final String groupKey;
+
+        Entry(Book book, Sort sort, boolean groupByPublisher) {
+            this.book = book;
+            dateKey = book.getPublishedDateKey();
+            String publisherKey = foldOrNull(book.getPublisher());
+            textKey = sort == Sort.AUTHOR ? foldOrNull(book.getAuthorNames())
+                    : sort == Sort.PUBLISHER ? publisherKey : null;
+            groupKey = groupByPublisher ? publisherKey : null;
+        }
+
+        private static String foldOrNull(String text) {
+            return text != null ? QueryCanonicalizer.fold(text) : null;
+        }
+    }
+
+    /**
+     * Compares entries by publisher group first (if grouped), then by the sort order.
+     * Missing values come last in both.
+     */
+    private static final class EntryComparator implements Comparator<Entry> {
+        private final Sort mSort;
+        private final boolean mGroupByPublisher;
+
+        EntryComparator(Sort sort, boolean groupByPublisher) {
+            mSort = sort;
+            mGroupByPublisher = groupByPublisher;
+        }
+
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (mGroupByPublisher) {
+                int byGroup = compareText(a.groupKey, b.groupKey);
+                if (byGroup != 0) {
+                    return byGroup;
+                }
+            }
+            switch (mSort) {
+                case DATE_NEWEST:
+                    return compareDates(b.dateKey, a.dateKey, true);
+                case DATE_OLDEST:
+                    return compareDates(a.dateKey, b.dateKey, false);
+                case AUTHOR:
+                case PUBLISHER:
+                    return compareText(a.textKey, b.textKey);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Compare two date keys, the unknown date (0) being last.
+         *
+         * @param reversed true if the keys have been swapped for a descending order
+         */
+        private static int compareDates(int first, int second, boolean reversed) {
+            if (first == 0 || second == 0) {
+                int unknownLast = (first == 0 ? 1 : 0) - (second == 0 ? 1 : 0);
+                return reversed ? -unknownLast : unknownLast;
+            }
+            return first < second ? -1 : (first == second ? 0 : 1);
+        }
+
+        private static int compareText(String a, String b) {
+            if (a == null || b == null) {
+                return (a == null ? 1 : 0) - (b == null ? 1 : 0);
+            }
+            return a.compareTo(b);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.android.booksearch;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and size metrics of every search, kept in the process without any external
+ * service. Recording a value costs a few atomic increments, so metrics are always on.
+ * <p>
+ * The time spent in every {@link Phase} of a search is recorded in a {@link Histogram}
+ * (in microseconds), the size of the responses in another one (in bytes), and events are
+ * counted by {@link Counter}. Everything can be exported with {@link #toJson()} or
+ * summarized in a few lines with {@link #toString()}.
+ */
+
+public final class SearchMetrics {
+
+    /**
+     * Phases of a search, each timed separately.
+     */
+    public enum Phase {
+        /**
+         * Looking the results up in the {@link BookCache}.
+         */
+        CACHE_LOOKUP,
+        /**
+         * DNS lookup, TCP and TLS handshakes (almost nothing on a reused connection).
+         */
+        CONNECT,
+        /**
+         * From the request being sent to the response headers (time to first byte).
+         */
+        FIRST_BYTE,
+        /**
+         * Waiting for the response body to arrive from the network.
+         */
+        BODY_READ,
+        /**
+         * Decompressing and parsing the body, without the time waiting for the network.
+         */
+        PARSE,
+        /**
+         * A whole search, from the cache lookup to the parsed books.
+         */
+        FETCH,
+        /**
+         * Handing the books of a search over to the UI.
+         */
+        DELIVER,
+        /**
+         * Binding a single book to its row.
+         */
+        BIND
+    }
+
+    /**
+     * Events counted during searches.
+     */
+    public enum Counter {
+        REQUESTS,
+        ERRORS,
+        RETRIES,
+        HEDGES,
+        NOT_MODIFIED,
+        CACHE_HITS,
+        CACHE_STALE_HITS,
+        CACHE_MISSES,
+        RESPONSE_BYTES,
+        ITEMS,
+        SHED
+    }
+
+    /**
+     * Single instance shared by the whole process.
+     */
+    private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+    private final Histogram[] mPhases = new Histogram[Phase.values().length];
+    private final Histogram mResponseSizes = new Histogram();
+    private final AtomicLong[] mCounters = new AtomicLong[Counter.values().length];
+
+    private SearchMetrics() {
+        for (int i = 0; i < mPhases.length; i++) {
+            mPhases[i] = new Histogram();
+        }
+        for (int i = 0; i < mCounters.length; i++) {
+            mCounters[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Return the metrics of the process.
+     */
+    public static SearchMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the time spent in a phase.
+     *
+     * @param phase       the phase
+     * @param elapsedNanos time spent, in nanoseconds (from {@link System#nanoTime()})
+     */
+    public void record(Phase phase, long elapsedNanos) {
+        mPhases[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * Record the size (in bytes, as received) of a response body.
+     */
+    public void recordResponseSize(long bytes) {
+        mResponseSizes.record(bytes);
+        add(Counter.RESPONSE_BYTES, bytes);
+    }
+
+    public void increment(Counter counter) {
+        mCounters[counter.ordinal()].incrementAndGet();
+    }
+
+    public void add(Counter counter, long delta) {
+        mCounters[counter.ordinal()].addAndGet(delta);
+    }
+
+    /**
+     * Return the times (in microseconds) recorded for the phase.
+     */
+    public Histogram getHistogram(Phase phase) {
+        return mPhases[phase.ordinal()];
+    }
+
+    /**
+     * Return the sizes (in bytes) of the response bodies.
+     */
+    public Histogram getResponseSizes() {
+        return mResponseSizes;
+    }
+
+    public long getCount(Counter counter) {
+        return mCounters[counter.ordinal()].get();
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (Histogram histogram : mPhases) {
+            histogram.reset();
+        }
+        mResponseSizes.reset();
+        for (AtomicLong counter : mCounters) {
+            counter.set(0);
+        }
+    }
+
+    /**
+     * Return every metric as a JSON object, e.g. to be written to a file.
+     */
+    public String toJson() {
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter writer = new JsonWriter(stringWriter);
+        writer.setIndent("  ");
+        try {
+            writer.beginObject();
+            writer.name("phasesMicros").beginObject();
+            for (Phase phase : Phase.values()) {
+                writer.name(phase.name().toLowerCase(Locale.US));
+                writeHistogram(writer, getHistogram(phase));
+            }
+            writer.endObject();
+            writer.name("responseBytes");
+            writeHistogram(writer, mResponseSizes);
+            writer.name("counters").beginObject();
+            for (Counter counter : Counter.values()) {
+                writer.name(counter.name().toLowerCase(Locale.US)).value(getCount(counter));
+            }
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            // A StringWriter does not fail.
+            throw new IllegalStateException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    private static void writeHistogram(JsonWriter writer, Histogram histogram)
+            throws IOException {
+        writer.beginObject();
+        writer.name("count").value(histogram.getCount());
+        writer.name("mean").value(Math.round(histogram.getMean()));
+        writer.name("p50").value(histogram.getPercentile(50));
+        writer.name("p90").value(histogram.getPercentile(90));
+        writer.name("p99").value(histogram.getPercentile(99));
+        writer.name("max").value(histogram.getMax());
+        writer.endObject();
+    }
+
+    /**
+     * Return a short summary, one line per phase with any recorded time (in milliseconds),
+     * followed by the counters.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("SearchMetrics");
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = getHistogram(phase);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.US,
+                    "%n  %-12s n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                    phase.name().toLowerCase(Locale.US), histogram.getCount(),
+                    histogram.getPercentile(50) / 1000f, histogram.getPercentile(90) / 1000f,
+                    histogram.getPercentile(99) / 1000f, histogram.getMax() / 1000f));
+        }
+        summary.append(String.format(Locale.US, "%n  response     p50=%dB p99=%dB",
+                mResponseSizes.getPercentile(50), mResponseSizes.getPercentile(99)));
+        summary.append(String.format("%n "));
+        for (Counter counter : Counter.values()) {
+            summary.append(' ').append(counter.name().toLowerCase(Locale.US))
+                    .append('=').append(getCount(counter));
+        }
+        return summary.toString();
+    }
+}
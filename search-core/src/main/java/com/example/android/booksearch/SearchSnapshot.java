@@ -0,0 +1,168 @@
+package com.example.android.booksearch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The state of the search shown to the user: the search phrase, the books loaded for it,
+ * how far the pages have been loaded and where the list is scrolled to.
+ * <p>
+ * A snapshot is written to a small binary file when the app goes to the background, so
+ * the results can be shown again right away if the process is killed. The file is read
+ * in one shot into memory and decoded from there, which takes a few milliseconds for
+ * hundreds of books, so it can be done before the first frame is drawn.
+ */
+
+public final class SearchSnapshot {
+
+    /**
+     * Logger for the log messages
+     */
+    private static final Logger LOGGER = Logger.getLogger(SearchSnapshot.class.getSimpleName());
+
+    /**
+     * Format of the snapshot file, changed whenever the file layout changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Larger files are not snapshots written by this class, they are not read.
+     */
+    private static final int MAX_FILE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Serializes writes, which share the temporary file.
+     */
+    private static final Object WRITE_LOCK = new Object();
+
+    private final String mSearchPhrase;
+    private final List<Book> mBooks;
+    private final int mNextStartIndex;
+    private final boolean mHasMorePages;
+    private final int mScrollPosition;
+    private final int mScrollOffset;
+    private final long mSavedAt;
+
+    /**
+     * Create a new {@link SearchSnapshot}.
+     *
+     * @param searchPhrase   phrase the books have been fetched for
+     * @param books          books loaded so far (every loaded page)
+     * @param nextStartIndex start index of the next page to request
+     * @param hasMorePages   false if the last requested page came back empty
+     * @param scrollPosition position of the first visible row
+     * @param scrollOffset   offset (in pixels) of the top of that row in the list
+     * @param savedAt        time (in milliseconds since the epoch) of the snapshot
+     */
+    public SearchSnapshot(String searchPhrase, List<Book> books, int nextStartIndex,
+                          boolean hasMorePages, int scrollPosition, int scrollOffset,
+                          long savedAt) {
+        mSearchPhrase = searchPhrase;
+        mBooks = Collections.unmodifiableList(new ArrayList<>(books));
+        mNextStartIndex = nextStartIndex;
+        mHasMorePages = hasMorePages;
+        mScrollPosition = scrollPosition;
+        mScrollOffset = scrollOffset;
+        mSavedAt = savedAt;
+    }
+
+    public String getSearchPhrase() {
+        return mSearchPhrase;
+    }
+
+    public List<Book> getBooks() {
+        return mBooks;
+    }
+
+    public int getNextStartIndex() {
+        return mNextStartIndex;
+    }
+
+    public boolean hasMorePages() {
+        return mHasMorePages;
+    }
+
+    public int getScrollPosition() {
+        return mScrollPosition;
+    }
+
+    public int getScrollOffset() {
+        return mScrollOffset;
+    }
+
+    public long getSavedAt() {
+        return mSavedAt;
+    }
+
+    /**
+     * Read the snapshot stored in the file.
+     *
+     * @return the snapshot, or null if the file does not exist or cannot be read.
+     */
+    public static SearchSnapshot read(File file) {
+        try {
+            DataInputStream input = FileUtils.readFully(file, MAX_FILE_BYTES);
+            return input != null ? decode(input) : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Problem reading the search snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot to the file, replacing the previous one only once it has been
+     * written completely.
+     *
+     * @return true if the snapshot has been written.
+     */
+    public boolean write(File file) {
+        synchronized (WRITE_LOCK) {
+            try {
+                FileUtils.writeAtomically(file, new FileUtils.Content() {
+                    @Override
+                    public void writeTo(DataOutputStream output) throws IOException {
+                        encode(output);
+                    }
+                });
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Problem writing the search snapshot " + file, e);
+                return false;
+            }
+        }
+    }
+
+    private void encode(DataOutputStream output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeLong(mSavedAt);
+        output.writeUTF(mSearchPhrase);
+        output.writeInt(mNextStartIndex);
+        output.writeBoolean(mHasMorePages);
+        output.writeInt(mScrollPosition);
+        output.writeInt(mScrollOffset);
+        BookSerializer.writeBooks(output, mBooks);
+    }
+
+    private static SearchSnapshot decode(DataInputStream input) throws IOException {
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unknown snapshot format " + version);
+        }
+        long savedAt = input.readLong();
+        String searchPhrase = input.readUTF();
+        int nextStartIndex = input.readInt();
+        boolean hasMorePages = input.readBoolean();
+        int scrollPosition = input.readInt();
+        int scrollOffset = input.readInt();
+        ArrayList<Book> books = BookSerializer.readBooks(input);
+        return new SearchSnapshot(searchPhrase, books, nextStartIndex, hasMorePages,
+                scrollPosition, scrollOffset, savedAt);
+    }
+}
@@ -0,0 +1,627 @@
+package com.example.android.booksearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Completions of what the user is typing in the search field, from the titles and authors
+ * of the books fetched so far and the past searches, without the network.
+ * <p>
+ * The suggestions are stored in a compact, immutable radix trie: chains of single-child
+ * nodes are merged, and the nodes are laid out breadth first in a few parallel arrays
+ * (the children of a node are contiguous, right before the children of the next node),
+ * so a trie of 100k suggestions takes a few MB and no object per node. Every node knows
+ * the highest weight below it, so the best completions are found by visiting the best
+ * branches first, and only a handful of nodes are visited for the top k.
+ * <p>
+ * If the text typed has no completion, or too few, the prefixes one typo away (a letter
+ * missing, extra, wrong or swapped with the next one) are completed as well.
+ * <p>
+ * A large trie is not rebuilt to add a few suggestions: {@link #withRecent(SuggestionTrie)}
+ * pairs it with a small trie of the recent ones, and their completions are merged.
+ * <p>
+ * Suggestions are folded like the queries (see {@link QueryCanonicalizer#fold(String)}):
+ * lower case, without accents, with single spaces between the words.
+ */
+
+public final class SuggestionTrie {
+
+    /**
+     * Longer titles are suggested up to the last word which fits.
+     */
+    static final int MAX_SUGGESTION_LENGTH = 48;
+
+    /**
+     * Typed text shorter than this is only completed, not corrected.
+     */
+    private static final int MIN_TYPO_LENGTH = 3;
+
+    /**
+     * Weight of a past search, compared with 1 for a title or author of a book.
+     */
+    public static final int QUERY_WEIGHT = 10;
+
+    /**
+     * A trie without any suggestion.
+     */
+    public static final SuggestionTrie EMPTY = new Builder().build();
+
+    /**
+     * Collects the suggestions of a trie, adding up the weights of the same text.
+     */
+    public static final class Builder {
+        private final HashMap<String, Integer> mWeights = new HashMap<>();
+
+        /**
+         * Add a suggestion, or add the weight to the suggestion of the same (folded) text.
+         */
+        public Builder add(String text, int weight) {
+            if (text == null) {
+                return this;
+            }
+            String key = normalize(text, false);
+            if (key.length() > MAX_SUGGESTION_LENGTH) {
+                int end = key.lastIndexOf(' ', MAX_SUGGESTION_LENGTH);
+                key = key.substring(0, end > 0 ? end : MAX_SUGGESTION_LENGTH);
+            }
+            if (!key.isEmpty() && weight > 0) {
+                Integer previous = mWeights.get(key);
+                mWeights.put(key, previous != null ? previous + weight : weight);
+            }
+            return this;
+        }
+
+        /**
+         * Add the title and every author of the books as suggestions.
+         */
+        public Builder addBooks(List<Book> books) {
+            for (Book book : books) {
+                add(book.getTitle(), 1);
+                for (String author : book.getAuthors()) {
+                    add(author, 1);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Add past searches (canonical phrases, see {@link QueryCanonicalizer}), which
+         * weigh more than the books.
+         */
+        public Builder addQueries(List<String> searchPhrases) {
+            for (String phrase : searchPhrases) {
+                add(phrase.replace('+', ' '), QUERY_WEIGHT);
+            }
+            return this;
+        }
+
+        public SuggestionTrie build() {
+            ArrayList<String> keys = new ArrayList<>(mWeights.keySet());
+            Collections.sort(keys);
+            return new SuggestionTrie(keys, mWeights);
+        }
+    }
+
+    /**
+     * A node of the trie being built, before it is laid out in the arrays.
+     */
+    private static final class BuildNode {
+        final int from;
+        final int to;
+        final int depth;
+        final String label;
+
+        /**
+         * Node for the sorted keys [from, to), which share the first depth chars, the
+         * last ones being the label.
+         */
+        BuildNode(int from, int to, int depth, String label) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.label = label;
+        }
+    }
+
+    /**
+     * A node of the trie (or the suggestion ending there) to visit while looking for the
+     * best completions.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final int node;
+        final int weight;
+        final boolean complete;
+
+        /**
+         * Text leading to the node, without its label, which is only appended once the
+         * node is visited.
+         */
+        final String parentText;
+
+        Candidate(int node, int weight, String parentText, boolean complete) {
+            this.node = node;
+            this.weight = weight;
+            this.parentText = parentText;
+            this.complete = complete;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            // Heaviest first, complete suggestions before the branches of the same weight.
+            if (weight != other.weight) {
+                return weight > other.weight ? -1 : 1;
+            }
+            if (complete != other.complete) {
+                return complete ? -1 : 1;
+            }
+            return node < other.node ? -1 : (node == other.node ? 0 : 1);
+        }
+    }
+
+    /**
+     * Labels of every node, one after the other in node order: the label of node i is
+     * mLabels[mLabelStart[i], mLabelStart[i + 1]).
+     */
+    private final char[] mLabels;
+    private final int[] mLabelStart;
+
+    /**
+     * The children of node i are the nodes [mFirstChild[i], mFirstChild[i + 1]), sorted
+     * by the first char of their label.
+     */
+    private final int[] mFirstChild;
+
+    /**
+     * Weight of the suggestion ending at the node, or 0 if none does.
+     */
+    private final int[] mWeight;
+
+    /**
+     * Highest weight of the suggestions ending at the node or below it.
+     */
+    private final int[] mMaxWeight;
+
+    /**
+     * First char of the label of every node (but the root), a copy kept next to each other
+     * so looking up a child touches less memory.
+     */
+    private final char[] mFirstChars;
+
+    private final int mNodeCount;
+    private final int mSize;
+
+    /**
+     * Suggestions added since this trie was built, or null if there are none.
+     */
+    private final SuggestionTrie mRecent;
+
+    private SuggestionTrie(List<String> keys, Map<String, Integer> weights) {
+        mRecent = null;
+        // Lay the nodes out breadth first: the children of each node are queued, and
+        // numbered, after the children of the nodes before it.
+        ArrayList<BuildNode> nodes = new ArrayList<>();
+        ArrayList<Integer> firstChildren = new ArrayList<>();
+        ArrayDeque<BuildNode> queue = new ArrayDeque<>();
+        queue.add(new BuildNode(0, keys.size(), 0, ""));
+        int nodeCount = 1;
+        int labelLength = 0;
+        while (!queue.isEmpty()) {
+            BuildNode node = queue.poll();
+            nodes.add(node);
+            labelLength += node.label.length();
+            firstChildren.add(nodeCount);
+            // The key ending at this node, if any, sorts first.
+            int from = node.from;
+            if (from < node.to && keys.get(from).length() == node.depth) {
+                from++;
+            }
+            while (from < node.to) {
+                char first = keys.get(from).charAt(node.depth);
+                int to = from + 1;
+                while (to < node.to && keys.get(to).charAt(node.depth) == first) {
+                    to++;
+                }
+                int depth = commonPrefixLength(keys.get(from), keys.get(to - 1));
+                queue.add(new BuildNode(from, to, depth,
+                        keys.get(from).substring(node.depth, depth)));
+                nodeCount++;
+                from = to;
+            }
+        }
+
+        mNodeCount = nodeCount;
+        mSize = keys.size();
+        mLabels = new char[labelLength];
+        mLabelStart = new int[nodeCount + 1];
+        mFirstChild = new int[nodeCount + 1];
+        mWeight = new int[nodeCount];
+        mMaxWeight = new int[nodeCount];
+        mFirstChars = new char[nodeCount];
+        int labelEnd = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            BuildNode node = nodes.get(i);
+            mLabelStart[i] = labelEnd;
+            node.label.getChars(0, node.label.length(), mLabels, labelEnd);
+            labelEnd += node.label.length();
+            if (i > 0) {
+                mFirstChars[i] = node.label.charAt(0);
+            }
+            mFirstChild[i] = firstChildren.get(i);
+            if (node.from < node.to && keys.get(node.from).length() == node.depth) {
+                mWeight[i] = weights.get(keys.get(node.from));
+            }
+        }
+        mLabelStart[nodeCount] = labelEnd;
+        mFirstChild[nodeCount] = nodeCount;
+        // Children come after their parent, so going backwards visits them first.
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            int max = mWeight[i];
+            for (int child = mFirstChild[i]; child < mFirstChild[i + 1]; child++) {
+                max = Math.max(max, mMaxWeight[child]);
+            }
+            mMaxWeight[i] = max;
+        }
+    }
+
+    /**
+     * Trie sharing the arrays of the other one, with the recent suggestions.
+     */
+    private SuggestionTrie(SuggestionTrie other, SuggestionTrie recent) {
+        mLabels = other.mLabels;
+        mLabelStart = other.mLabelStart;
+        mFirstChild = other.mFirstChild;
+        mWeight = other.mWeight;
+        mMaxWeight = other.mMaxWeight;
+        mFirstChars = other.mFirstChars;
+        mNodeCount = other.mNodeCount;
+        mSize = other.mSize;
+        mRecent = recent;
+    }
+
+    /**
+     * Return the suggestions of this trie and of the recent one (replacing the recent
+     * suggestions of this trie, if any), without rebuilding this trie: the recent one is
+     * meant to be small, and rebuilt whenever suggestions are added to it.
+     */
+    public SuggestionTrie withRecent(SuggestionTrie recent) {
+        return new SuggestionTrie(this, recent.mSize > 0 ? recent.base() : null);
+    }
+
+    /**
+     * Return this trie without its recent suggestions.
+     */
+    private SuggestionTrie base() {
+        return mRecent == null ? this : new SuggestionTrie(this, null);
+    }
+
+    /**
+     * Return the number of suggestions, a text which is both in this trie and in the
+     * recent suggestions counting twice.
+     */
+    public int size() {
+        return mSize + (mRecent != null ? mRecent.mSize : 0);
+    }
+
+    /**
+     * Return the approximate number of bytes used by the arrays of the trie.
+     */
+    public long getMemoryBytes() {
+        return 2L * (mLabels.length + mFirstChars.length) + 4L * (mLabelStart.length
+                + mFirstChild.length + mWeight.length + mMaxWeight.length)
+                + (mRecent != null ? mRecent.getMemoryBytes() : 0);
+    }
+
+    /**
+     * Return the best completions of the text typed, heaviest first: the suggestions
+     * starting with it, then, if there are fewer than count, those starting with a text
+     * one typo away from it.
+     *
+     * @param typed text typed by the user, folded like the suggestions
+     * @param count maximum number of suggestions returned
+     */
+    public List<String> complete(String typed, int count) {
+        List<String> result = completeOwn(typed, count);
+        if (mRecent == null) {
+            return result;
+        }
+        List<String> recent = mRecent.completeOwn(typed, count);
+        if (recent.isEmpty()) {
+            return result;
+        }
+        // Each trie has its best completions, those of both are ranked again with the
+        // weights of both. Completions of the text as typed still come first.
+        final String prefix = normalize(typed, true);
+        final HashMap<String, Integer> weights = new HashMap<>();
+        ArrayList<String> merged = new ArrayList<>(result);
+        merged.removeAll(recent);
+        merged.addAll(recent);
+        for (String text : merged) {
+            weights.put(text, weight(text) + mRecent.weight(text));
+        }
+        Collections.sort(merged, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                boolean exactA = a.startsWith(prefix);
+                if (exactA != b.startsWith(prefix)) {
+                    return exactA ? -1 : 1;
+                }
+                return weights.get(b).compareTo(weights.get(a));
+            }
+        });
+        return merged.size() > count ? new ArrayList<>(merged.subList(0, count)) : merged;
+    }
+
+    /**
+     * Return the best completions of the text typed in this trie, without the recent
+     * suggestions.
+     */
+    private List<String> completeOwn(String typed, int count) {
+        ArrayList<String> result = new ArrayList<>(count);
+        String prefix = normalize(typed, true);
+        if (prefix.isEmpty() || count <= 0 || mSize == 0) {
+            return result;
+        }
+        HashSet<Integer> loci = new HashSet<>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        addLocus(prefix, candidates, loci);
+        collect(candidates, count, result);
+        if (result.size() < count && prefix.length() >= MIN_TYPO_LENGTH) {
+            findTypos(prefix, 0, 0, 0, new StringBuilder(), true, candidates, loci);
+            // Corrections come after the completions of the text as typed.
+            HashSet<String> exact = new HashSet<>(result);
+            ArrayList<String> corrections = new ArrayList<>();
+            collect(candidates, count + exact.size(), corrections);
+            for (String correction : corrections) {
+                if (result.size() == count) {
+                    break;
+                }
+                if (!exact.contains(correction)) {
+                    result.add(correction);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Queue the node where the prefix ends, unless the prefix is not in the trie.
+     */
+    private void addLocus(String prefix, PriorityQueue<Candidate> candidates,
+                          HashSet<Integer> loci) {
+        int node = 0;
+        int nodeStart = 0;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            int child = findChild(node, prefix.charAt(matched));
+            if (child < 0) {
+                return;
+            }
+            int labelStart = mLabelStart[child];
+            int labelLength = mLabelStart[child + 1] - labelStart;
+            int compared = Math.min(labelLength, prefix.length() - matched);
+            for (int i = 0; i < compared; i++) {
+                if (mLabels[labelStart + i] != prefix.charAt(matched + i)) {
+                    return;
+                }
+            }
+            // The prefix may end inside the label, the rest of the label is completed.
+            node = child;
+            nodeStart = matched;
+            matched += labelLength;
+        }
+        loci.add(node);
+        candidates.add(new Candidate(node, mMaxWeight[node], prefix.substring(0, nodeStart),
+                false));
+    }
+
+    /**
+     * Return the weight of the suggestion, or 0 if it is not in the trie.
+     *
+     * @param key suggestion as returned by {@link #complete(String, int)}
+     */
+    private int weight(String key) {
+        int node = 0;
+        int matched = 0;
+        while (matched < key.length()) {
+            int child = findChild(node, key.charAt(matched));
+            if (child < 0) {
+                return 0;
+            }
+            int labelStart = mLabelStart[child];
+            int labelLength = mLabelStart[child + 1] - labelStart;
+            if (matched + labelLength > key.length()) {
+                return 0;
+            }
+            for (int i = 0; i < labelLength; i++) {
+                if (mLabels[labelStart + i] != key.charAt(matched + i)) {
+                    return 0;
+                }
+            }
+            node = child;
+            matched += labelLength;
+        }
+        return mWeight[node];
+    }
+
+    /**
+     * Poll the candidates, best first, until count suggestions have been found.
+     */
+    private void collect(PriorityQueue<Candidate> candidates, int count,
+                         List<String> result) {
+        while (result.size() < count && !candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            String text = candidate.parentText + label(candidate.node);
+            if (candidate.complete) {
+                if (!result.contains(text)) {
+                    result.add(text);
+                }
+                continue;
+            }
+            int node = candidate.node;
+            if (mWeight[node] > 0) {
+                candidates.add(new Candidate(node, mWeight[node], candidate.parentText, true));
+            }
+            for (int child = mFirstChild[node]; child < mFirstChild[node + 1]; child++) {
+                candidates.add(new Candidate(child, mMaxWeight[child], text, false));
+            }
+        }
+    }
+
+    /**
+     * Queue the nodes where the texts one edit away from the prefix end, walking the trie
+     * along the prefix with one edit allowed.
+     *
+     * @param node     node whose label is being matched
+     * @param offset   number of chars of the label already matched
+     * @param position number of chars of the prefix already matched
+     * @param path     text of the trie matched so far
+     * @param canEdit  false once the edit has been used
+     * @param loci     nodes queued already
+     */
+    private void findTypos(String prefix, int node, int offset, int position,
+                           StringBuilder path, boolean canEdit,
+                           PriorityQueue<Candidate> candidates, HashSet<Integer> loci) {
+        if (position == prefix.length()) {
+            if (!canEdit && loci.add(node)) {
+                candidates.add(new Candidate(node, mMaxWeight[node],
+                        path.substring(0, path.length() - offset), false));
+            }
+            return;
+        }
+        char typed = prefix.charAt(position);
+        if (canEdit) {
+            // The char typed is extra.
+            findTypos(prefix, node, offset, position + 1, path, false, candidates, loci);
+        }
+        int labelLength = mLabelStart[node + 1] - mLabelStart[node];
+        if (offset < labelLength) {
+            step(prefix, node, offset, mLabels[mLabelStart[node] + offset], position, typed,
+                    path, canEdit, candidates, loci);
+        } else if (canEdit) {
+            for (int child = mFirstChild[node]; child < mFirstChild[node + 1]; child++) {
+                step(prefix, child, 0, mFirstChars[child], position, typed,
+                        path, true, candidates, loci);
+            }
+        } else {
+            // Without edit, only the child starting with the char typed can match.
+            int child = findChild(node, typed);
+            if (child >= 0) {
+                step(prefix, child, 0, typed, position, typed, path, false, candidates, loci);
+            }
+        }
+    }
+
+    /**
+     * Match the next char of the trie (the char at offset in the label of node) with the
+     * char typed at position, exactly or with an edit.
+     */
+    private void step(String prefix, int node, int offset, char next, int position,
+                      char typed, StringBuilder path, boolean canEdit,
+                      PriorityQueue<Candidate> candidates, HashSet<Integer> loci) {
+        path.append(next);
+        if (next == typed) {
+            findTypos(prefix, node, offset + 1, position + 1, path, canEdit, candidates, loci);
+        } else if (canEdit) {
+            // A wrong char, or a missing one.
+            findTypos(prefix, node, offset + 1, position + 1, path, false, candidates, loci);
+            findTypos(prefix, node, offset + 1, position, path, false, candidates, loci);
+            // Two chars swapped: the next char of the trie is the one typed after.
+            if (position + 1 < prefix.length() && prefix.charAt(position + 1) == next) {
+                swapped(prefix, node, offset + 1, position, path, candidates, loci);
+            }
+        }
+        path.setLength(path.length() - 1);
+    }
+
+    /**
+     * Match the char typed at position with the char of the trie right after a swap, then
+     * continue without edit.
+     */
+    private void swapped(String prefix, int node, int offset, int position,
+                         StringBuilder path, PriorityQueue<Candidate> candidates,
+                         HashSet<Integer> loci) {
+        char typed = prefix.charAt(position);
+        int labelLength = mLabelStart[node + 1] - mLabelStart[node];
+        if (offset < labelLength) {
+            if (mLabels[mLabelStart[node] + offset] == typed) {
+                path.append(typed);
+                findTypos(prefix, node, offset + 1, position + 2, path, false, candidates, loci);
+                path.setLength(path.length() - 1);
+            }
+        } else {
+            int child = findChild(node, typed);
+            if (child >= 0) {
+                path.append(typed);
+                findTypos(prefix, child, 1, position + 2, path, false, candidates, loci);
+                path.setLength(path.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Return the child of the node whose label starts with the char, or -1.
+     */
+    private int findChild(int node, char c) {
+        int low = mFirstChild[node];
+        int high = mFirstChild[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char first = mFirstChars[middle];
+            if (first < c) {
+                low = middle + 1;
+            } else if (first > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private String label(int node) {
+        return new String(mLabels, mLabelStart[node], mLabelStart[node + 1] - mLabelStart[node]);
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Fold the text and keep its words, separated by single spaces. A trailing space is
+     * kept if asked for, so "harry " is not completed into "harrys".
+     */
+    static String normalize(String text, boolean keepTrailingSpace) {
+        String folded = QueryCanonicalizer.fold(text);
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean space = false;
+        for (int i = 0; i < folded.length(); ) {
+            int codePoint = folded.codePointAt(i);
+            if (QueryCanonicalizer.isWordChar(codePoint)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                space = false;
+                normalized.appendCodePoint(codePoint);
+            } else {
+                space = true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (space && keepTrailingSpace && normalized.length() > 0) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.android.booksearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes a UTF-8 stream straight into the char buffer of the reader's caller (e.g. the
+ * JSON parser), through a byte buffer taken from the {@link BufferPool}, so no text is
+ * copied in between and no buffer is allocated per stream. Malformed bytes are replaced.
+ * <p>
+ * The stream may be at most a given number of bytes long, a longer one makes the reader
+ * throw a {@link BodyTooLargeException}. Closing the reader gives its buffer back to the
+ * pool, but does not close the stream, which belongs to the caller.
+ */
+
+final class Utf8Reader extends Reader {
+
+    /**
+     * Thrown when the stream is longer than the limit of the reader.
+     */
+    static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(long maxBytes) {
+            super("Response body larger than " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * Decoders of the reading threads, reset for every reader.
+     */
+    private static final ThreadLocal<CharsetDecoder> DECODERS =
+            new ThreadLocal<CharsetDecoder>() {
+        @Override
+        protected CharsetDecoder initialValue() {
+            return Charset.forName("UTF-8").newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    };
+
+    private final InputStream mInput;
+    private final long mMaxBytes;
+    private final CharsetDecoder mDecoder;
+    private byte[] mBuffer;
+
+    /**
+     * Bytes read but not decoded yet, between its position and its limit.
+     */
+    private ByteBuffer mBytes;
+
+    /**
+     * Second half of a surrogate pair decoded when the caller only had room for one char,
+     * or 0.
+     */
+    private char mPendingChar;
+
+    private long mBytesRead;
+    private boolean mEndOfInput;
+    private boolean mFlushed;
+
+    /**
+     * Create a reader decoding the stream, which may be at most the given number of
+     * bytes long.
+     */
+    Utf8Reader(InputStream input, long maxBytes) {
+        mInput = input;
+        mMaxBytes = maxBytes;
+        mDecoder = DECODERS.get();
+        mDecoder.reset();
+        mBuffer = BufferPool.acquire();
+        mBytes = ByteBuffer.wrap(mBuffer);
+        mBytes.limit(0);
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (mBuffer == null) {
+            throw new IOException("Reader closed");
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (mFlushed) {
+            return -1;
+        }
+        int start = offset;
+        if (mPendingChar != 0) {
+            chars[offset++] = mPendingChar;
+            mPendingChar = 0;
+            if (--length == 0) {
+                return 1;
+            }
+        }
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+        while (true) {
+            CoderResult result = mDecoder.decode(mBytes, out, mEndOfInput);
+            if (out.position() > start) {
+                return out.position() - start;
+            }
+            if (result.isOverflow()) {
+                // A surrogate pair and room for one char: hand it over in two reads.
+                CharBuffer pair = CharBuffer.allocate(2);
+                mDecoder.decode(mBytes, pair, mEndOfInput);
+                chars[offset] = pair.get(0);
+                mPendingChar = pair.get(1);
+                return offset + 1 - start;
+            }
+            if (mEndOfInput) {
+                mDecoder.flush(out);
+                mFlushed = true;
+                return out.position() > start ? out.position() - start : -1;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Read more bytes after the ones not decoded yet.
+     */
+    private void fill() throws IOException {
+        mBytes.compact();
+        int read = mInput.read(mBuffer, mBytes.position(), mBytes.remaining());
+        if (read == -1) {
+            mEndOfInput = true;
+        } else {
+            mBytesRead += read;
+            if (mBytesRead > mMaxBytes) {
+                throw new BodyTooLargeException(mMaxBytes);
+            }
+            mBytes.position(mBytes.position() + read);
+        }
+        mBytes.flip();
+    }
+
+    /**
+     * Give the buffer back to the pool. The stream is left open.
+     */
+    @Override
+    public void close() {
+        if (mBuffer != null) {
+            BufferPool.release(mBuffer);
+            mBuffer = null;
+            mBytes = null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.android.booksearch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link BatchSearch} against a local server which answers every search "qN" with
+ * the volumes "vN" and "vN+1" after a short delay.
+ */
+public class BatchSearchTest {
+
+    private static final long SERVER_DELAY_MILLIS = 20;
+    private static final Pattern QUERY = Pattern.compile("q=q(\\d+)");
+
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newFixedThreadPool(16));
+        mServer.createContext("/volumes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests.incrementAndGet();
+                Matcher matcher = QUERY.matcher(exchange.getRequestURI().getRawQuery());
+                int n = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+                try {
+                    Thread.sleep(SERVER_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = ("{\"items\":[" + item(n) + "," + item(n + 1) + "]}")
+                        .getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/volumes";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    private static String item(int n) {
+        return "{\"id\":\"v" + n + "\",\"volumeInfo\":{\"title\":\"Book " + n + "\"}}";
+    }
+
+    private static List<String> phrases(int count) {
+        ArrayList<String> phrases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            phrases.add("q" + i);
+        }
+        return phrases;
+    }
+
+    /**
+     * Collects the results of a batch.
+     */
+    private static final class Results implements BatchSearch.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger searches = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+        volatile List<Book> books;
+
+        @Override
+        public void onSearchCompleted(String searchPhrase, List<Book> newBooks) {
+            searches.incrementAndGet();
+            delivered.addAndGet(newBooks.size());
+        }
+
+        @Override
+        public void onBatchCompleted(List<Book> books) {
+            this.books = new ArrayList<>(books);
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void batch_fetchesInParallelAndRemovesDuplicates() throws Exception {
+        BatchSearch batchSearch =
+                new BatchSearch(new HttpBookSearchClient(mBaseUrl, null, null), 8);
+        Results results = new Results();
+
+        long start = System.nanoTime();
+        batchSearch.start(phrases(200), 10, results);
+        assertTrue(results.done.await(30, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(200, results.searches.get());
+        // v0 ... v200, every volume but the first returned by two searches.
+        assertEquals(201, results.books.size());
+        assertEquals(201, results.delivered.get());
+        // One search at a time would take at least 200 * SERVER_DELAY_MILLIS.
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 200 * SERVER_DELAY_MILLIS);
+    }
+
+    @Test
+    public void batch_isRateLimitedPerHost() throws Exception {
+        HostRateLimiter rateLimiter = new HostRateLimiter(100, 5);
+        BatchSearch batchSearch = new BatchSearch(
+                new HttpBookSearchClient(mBaseUrl, null, null, rateLimiter), 8);
+        Results results = new Results();
+
+        long start = System.nanoTime();
+        batchSearch.start(phrases(45), 10, results);
+        assertTrue(results.done.await(30, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 5 requests right away, the other 40 at 100 per second.
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 380);
+        assertEquals(46, results.books.size());
+    }
+
+    @Test
+    public void cancelledBatch_deliversNothing() throws Exception {
+        BatchSearch batchSearch =
+                new BatchSearch(new HttpBookSearchClient(mBaseUrl, null, null), 4);
+        Results results = new Results();
+        BatchSearch.Batch batch = batchSearch.start(phrases(50), 10, results);
+        batch.cancel();
+
+        assertFalse(results.done.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(0, results.searches.get());
+        assertTrue(mRequests.get() < 50);
+    }
+
+    @Test
+    public void emptyBatch_completesRightAway() {
+        Results results = new Results();
+        new BatchSearch(new HttpBookSearchClient(mBaseUrl, null, null), 4)
+                .start(Collections.<String>emptyList(), 10, results);
+        assertEquals(0, results.done.getCount());
+        assertTrue(results.books.isEmpty());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.android.booksearch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link BookDetailCache} keeps the details on disk, apart from the results.
+ */
+public class BookDetailCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void details_areReadBackFromDisk() throws Exception {
+        File dir = folder.newFolder();
+        BookDetail detail = new BookDetail("zyTCAlFPjgYC", "<p>The story.</p>", 207,
+                Collections.singletonList("Computers"),
+                Arrays.asList("9780553804577", "055380457X"));
+        new BookDetailCache(dir).put(detail, "\"etag\"");
+
+        BookDetailCache.Entry entry = new BookDetailCache(dir).get("zyTCAlFPjgYC");
+        assertEquals(detail, entry.detail);
+        assertEquals("\"etag\"", entry.etag);
+        assertTrue(entry.isFresh(System.currentTimeMillis()));
+        assertNull(new BookDetailCache(dir).get("other"));
+        // Results are cached in their own directory.
+        assertFalse(new File(dir, "book-results").exists());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the heap retained by parsed {@link Book}s, compared with the previous model
+ * which stored the display labels ("Author(s): ...", "Published by: ...") in every book.
+ * <p>
+ * Sizes are estimated by walking the object graph with a fixed 32-bit layout (12 byte
+ * headers, 4 byte references, 8 byte alignment, UTF-16 strings), so the numbers are the
+ * same on every JVM. Objects shared between books are counted once.
+ */
+public class BookFootprintTest {
+
+    /**
+     * Number of times the same response is parsed, like repeated pages of a search.
+     */
+    private static final int RESPONSES = 200;
+
+    /**
+     * Book as it was stored before, with labels concatenated in the constructor.
+     */
+    @SuppressWarnings("unused")
+    private static final class LegacyBook {
+        private final String mTitle;
+        private final String mAuthor;
+        private final String mPublisher;
+        private final String mPublishedDate;
+        private final String mThumbnailUrl;
+
+        LegacyBook(Book book) {
+            mTitle = book.getTitle();
+            String authors = book.getAuthorNames();
+            mAuthor = "Author(s): " + (authors != null ? authors : "(not available)");
+            String publisher = book.getPublisher();
+            mPublisher = "Published by: " + (publisher != null ? publisher : "(not available)");
+            mPublishedDate = book.getPublishedDate();
+            mThumbnailUrl = book.getThumbnailUrl();
+        }
+    }
+
+    @Test
+    public void retainedSize_isSmallerThanLegacyModel() throws Exception {
+        ArrayList<Book> books = new ArrayList<>();
+        ArrayList<LegacyBook> legacyBooks = new ArrayList<>();
+        for (int i = 0; i < RESPONSES; i++) {
+            InputStream inputStream =
+                    getClass().getClassLoader().getResourceAsStream("volumes_typical.json");
+            assertNotNull(inputStream);
+            for (Book book : BookStreamParser.parse(inputStream)) {
+                books.add(book);
+                legacyBooks.add(new LegacyBook(book));
+            }
+        }
+
+        long bookBytes = retainedSize(books) / books.size();
+        long legacyBytes = retainedSize(legacyBooks) / legacyBooks.size();
+        assertTrue("Book retains " + bookBytes + " bytes, legacy model " + legacyBytes,
+                bookBytes < legacyBytes);
+    }
+
+    private static long retainedSize(List<?> objects) throws IllegalAccessException {
+        IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<>();
+        long bytes = 0;
+        for (Object object : objects) {
+            bytes += sizeOf(object, visited);
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Object object, IdentityHashMap<Object, Boolean> visited)
+            throws IllegalAccessException {
+        if (object == null || visited.put(object, Boolean.TRUE) != null) {
+            return 0;
+        }
+        if (object instanceof String) {
+            // String object (header, value, hash) and its char array.
+            return align(12 + 4 + 4) + align(16 + 2 * ((String) object).length());
+        }
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(object);
+            long bytes = align(16 + 4L * length);
+            for (int i = 0; i < length; i++) {
+                bytes += sizeOf(Array.get(object, i), visited);
+            }
+            return bytes;
+        }
+        long shallow = 12;
+        long referenced = 0;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                if (fieldType == long.class || fieldType == double.class) {
+                    shallow += 8;
+                } else if (fieldType == byte.class || fieldType == boolean.class) {
+                    shallow += 1;
+                } else if (fieldType == char.class || fieldType == short.class) {
+                    shallow += 2;
+                } else {
+                    shallow += 4;
+                    if (!fieldType.isPrimitive()) {
+                        field.setAccessible(true);
+                        referenced += sizeOf(field.get(object), visited);
+                    }
+                }
+            }
+        }
+        return align(shallow) + referenced;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.booksearch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the matching, ranking and persistence of {@link BookIndex}.
+ */
+public class BookIndexTest {
+
+    /**
+     * Runs the index work on the calling thread, so results are visible right away.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Book book(String title, String author, String publisher) {
+        List<String> authors = author != null
+                ? Collections.singletonList(author) : Collections.<String>emptyList();
+        return new Book(title, authors, publisher);
+    }
+
+    private BookIndex newIndex() {
+        return new BookIndex(new File(folder.getRoot(), "book-index.bin"), DIRECT);
+    }
+
+    @Test
+    public void search_matchesWordPrefixesOfEveryField() throws Exception {
+        BookIndex index = newIndex();
+        index.addAll(Arrays.asList(
+                book("Effective Java", "Joshua Bloch", "Addison-Wesley"),
+                book("Java Concurrency in Practice", "Brian Goetz", "Addison-Wesley"),
+                book("Clean Code", "Robert C. Martin", "Prentice Hall")));
+
+        assertEquals(2, index.search("jav", 10).size());
+        assertEquals("Effective Java", index.search("bloch", 10).get(0).getTitle());
+        assertEquals("Clean Code", index.search("prent+hall", 10).get(0).getTitle());
+        // Every query word has to match.
+        assertTrue(index.search("java martin", 10).isEmpty());
+        assertTrue(index.search("python", 10).isEmpty());
+    }
+
+    @Test
+    public void search_ranksTitleAndExactMatchesFirst() throws Exception {
+        BookIndex index = newIndex();
+        index.addAll(Arrays.asList(
+                book("Gardening for Beginners", "Anna Java", "Green Press"),
+                book("Javascript Patterns", "Stoyan Stefanov", "O'Reilly"),
+                book("Head First Java", "Kathy Sierra", "O'Reilly")));
+
+        ArrayList<Book> result = index.search("java", 10);
+        assertEquals(3, result.size());
+        assertEquals("Head First Java", result.get(0).getTitle());
+        assertEquals("Javascript Patterns", result.get(2).getTitle());
+        assertEquals(1, index.search("java", 1).size());
+    }
+
+    @Test
+    public void addAll_skipsBooksAlreadyIndexed() throws Exception {
+        BookIndex index = newIndex();
+        Book book = book("Refactoring", "Martin Fowler", "Addison-Wesley");
+        index.addAll(Collections.singletonList(book));
+        index.addAll(Arrays.asList(book, book("Refactoring", "Martin Fowler", "Addison-Wesley")));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void books_areReadBackFromTheFile() throws Exception {
+        File file = new File(folder.getRoot(), "book-index.bin");
+        new BookIndex(file, DIRECT).addAll(Arrays.asList(
+                book("Design Patterns", "Erich Gamma", null),
+                book("Domain-Driven Design", null, "Addison-Wesley")));
+
+        BookIndex reopened = new BookIndex(file, DIRECT);
+        assertEquals(2, reopened.size());
+        assertEquals("Domain-Driven Design", reopened.search("addison", 10).get(0).getTitle());
+
+        // A record cut short is dropped, the ones before it are kept.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+        assertEquals(1, new BookIndex(file, DIRECT).size());
+    }
+
+    @Test
+    public void search_returnsAtMostMaxResultsAmongManyBooks() throws Exception {
+        BookIndex index = newIndex();
+        String[] words = {"java", "android", "python", "kotlin", "design", "patterns",
+                "clean", "code", "algorithms", "data", "network", "systems"};
+        ArrayList<Book> books = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            books.add(book(words[i % 12] + ' ' + words[(i / 12) % 12] + " volume " + i,
+                    "Author " + (i % 997), "Publisher " + (i % 31)));
+        }
+        index.addAll(books);
+        assertEquals(30000, index.size());
+
+        // The time taken is measured by IndexBenchmark.
+        assertEquals(20, index.search("java co", 20).size());
+        assertEquals(20, index.search("a", 20).size());
+        assertTrue(index.search("a", 0).isEmpty());
+    }
+}
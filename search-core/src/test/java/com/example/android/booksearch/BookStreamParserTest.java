@@ -0,0 +1,115 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link BookStreamParser} against the DOM-based
+ * {@link QueryUtils#extractBooksFromJson(String)} on recorded Books API responses.
+ */
+public class BookStreamParserTest {
+
+    @Test
+    public void typicalResponse_matchesDomParser() throws Exception {
+        assertSameBooks("volumes_typical.json");
+    }
+
+    @Test
+    public void nestedFieldNames_matchDomParser() throws Exception {
+        assertSameBooks("volumes_nested_names.json");
+    }
+
+    @Test
+    public void emptyResponse_returnsNoBooks() throws Exception {
+        assertSameBooks("volumes_empty.json");
+        assertTrue(BookStreamParser.parse(open("volumes_empty.json")).isEmpty());
+    }
+
+    @Test
+    public void missingFields_useDefaults() throws Exception {
+        ArrayList<Book> books = BookStreamParser.parse(open("volumes_typical.json"));
+        assertEquals(5, books.size());
+        assertEquals("zyTCAlFPjgYC", books.get(0).getId());
+        assertEquals("David A. Vise, Mark Malseed", books.get(0).getAuthorNames());
+        assertEquals(2, books.get(0).getAuthors().size());
+        assertNull(books.get(2).getAuthorNames());
+        assertTrue(books.get(2).getAuthors().isEmpty());
+        assertNull(books.get(3).getPublisher());
+        assertNull(books.get(4).getPublishedDate());
+        assertNull(books.get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void thumbnail_usesHttps() throws Exception {
+        ArrayList<Book> books = BookStreamParser.parse(open("volumes_typical.json"));
+        assertEquals("https://books.google.com/books/content?id=zyTCAlFPjgYC"
+                        + "&printsec=frontcover&img=1&zoom=1&source=gbs_api",
+                books.get(0).getThumbnailUrl());
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedResponse_throws() throws Exception {
+        BookStreamParser.parse(new ByteArrayInputStream(
+                "{\"items\":[{\"volumeInfo\":{\"title\":".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void volumeResponse_isParsedIntoDetail() throws Exception {
+        BookDetail detail = BookStreamParser.parseDetail(open("volume_detail.json"),
+                Long.MAX_VALUE);
+        assertEquals("zyTCAlFPjgYC", detail.getId());
+        assertEquals("<p>Here is the story behind one of the most remarkable Internet "
+                + "successes of our time.</p>", detail.getDescription());
+        assertEquals(207, detail.getPageCount());
+        assertEquals(Arrays.asList("Browsers (Computer programs)"), detail.getCategories());
+        assertEquals(Arrays.asList("9780553804577", "055380457X"), detail.getIsbns());
+
+        BookDetail bare = BookStreamParser.parseDetail(new ByteArrayInputStream(
+                "{\"id\":\"x\",\"volumeInfo\":{}}".getBytes("UTF-8")), Long.MAX_VALUE);
+        assertNull(bare.getDescription());
+        assertEquals(0, bare.getPageCount());
+        assertTrue(bare.getIsbns().isEmpty());
+    }
+
+    private static void assertSameBooks(String resource) throws IOException {
+        String json = new String(readAll(open(resource)), Charset.forName("UTF-8"));
+        ArrayList<Book> expected = QueryUtils.extractBooksFromJson(json);
+        ArrayList<Book> actual = BookStreamParser.parse(open(resource));
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    private static InputStream open(String resource) {
+        InputStream inputStream =
+                BookStreamParserTest.class.getClassLoader().getResourceAsStream(resource);
+        assertNotNull("Missing test resource " + resource, inputStream);
+        return inputStream;
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which books {@link EditionClusterer} counts as editions of the same work.
+ */
+public class EditionClustererTest {
+
+    private static Book book(String title, String author) {
+        return new Book(title, Collections.singletonList(author), null);
+    }
+
+    private static boolean sameWork(Book first, Book second) {
+        EditionClusterer clusterer = new EditionClusterer();
+        return clusterer.add(first) == clusterer.add(second);
+    }
+
+    @Test
+    public void editions_areCollapsed() {
+        Book hobbit = book("The Hobbit", "J. R. R. Tolkien");
+        assertTrue(sameWork(hobbit, book("The Hobbit (Illustrated Edition)", "J.R.R. Tolkien")));
+        assertTrue(sameWork(hobbit, book("Hobbit, The", "Tolkien")));
+        assertTrue(sameWork(hobbit, book("The Hobbit: Or There and Back Again", "Tolkien")));
+        assertTrue(sameWork(book("The Hobbit: 75th Anniversary", "Tolkien"), hobbit));
+        // Near matches: a plural and a typo.
+        assertTrue(sameWork(book("The Fellowship of the Ring", "Tolkien"),
+                book("Fellowship of the Rings", "Tolkien")));
+        assertTrue(sameWork(book("One Flew Over the Cuckoo's Nest", "Ken Kesey"),
+                book("One Flew Over the Cukoo's Nest", "Ken Kesey")));
+        assertTrue(sameWork(book("L'\u00c9tranger", "Albert Camus"),
+                book("L'etranger", "Albert Camus")));
+    }
+
+    @Test
+    public void differentWorks_areKeptApart() {
+        assertFalse(sameWork(book("Harry Potter and the Chamber of Secrets", "J. K. Rowling"),
+                book("Harry Potter and the Prisoner of Azkaban", "J. K. Rowling")));
+        assertFalse(sameWork(book("Harry Potter: The Chamber of Secrets", "J. K. Rowling"),
+                book("Harry Potter: The Goblet of Fire", "J. K. Rowling")));
+        assertFalse(sameWork(book("Dune", "Frank Herbert"), book("Dune Messiah", "Frank Herbert")));
+        // Same title, another author.
+        assertFalse(sameWork(book("Collected Poems", "Sylvia Plath"),
+                book("Collected Poems", "Philip Larkin")));
+    }
+
+    @Test
+    public void works_keepTheOrderOfTheirFirstEdition() {
+        EditionClusterer clusterer = new EditionClusterer();
+        Book dune = book("Dune", "Frank Herbert");
+        Book emma = book("Emma", "Jane Austen");
+        Book duneDeluxe = book("Dune: Deluxe Edition", "Frank Herbert");
+        assertEquals(0, clusterer.add(dune).getIndex());
+        assertEquals(1, clusterer.add(emma).getIndex());
+        // A later page adds an edition to the first work, and no new work.
+        EditionClusterer.Work work = clusterer.add(duneDeluxe);
+        assertEquals(0, work.getIndex());
+        assertSame(dune, work.getBook());
+        assertEquals(2, work.getEditionCount());
+
+        List<EditionClusterer.Work> works = clusterer.getWorks();
+        assertEquals(2, works.size());
+        assertSame(emma, works.get(1).getBook());
+    }
+}
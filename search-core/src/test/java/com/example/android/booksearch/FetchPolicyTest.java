@@ -0,0 +1,274 @@
+package com.example.android.booksearch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs requests made with a {@link FetchPolicy} against a local server answering with
+ * errors, throttling or delays.
+ */
+public class FetchPolicyTest {
+
+    private static final String BODY =
+            "{\"items\":[{\"id\":\"v1\",\"volumeInfo\":{\"title\":\"Book 1\"}}]}";
+
+    /**
+     * Answers the n-th request (starting from 1) made to the server.
+     */
+    private interface Script {
+        void respond(int request, HttpExchange exchange) throws IOException;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private String mUrl;
+    private ExecutorService mHedgeExecutor;
+    private FetchPolicy mPolicy;
+    private volatile Script mScript;
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/volumes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mScript.respond(mRequests.incrementAndGet(), exchange);
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/volumes?q=test";
+        mHedgeExecutor = Executors.newCachedThreadPool();
+        mPolicy = new FetchPolicy(3, 10, 50, 200, mHedgeExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mHedgeExecutor.shutdownNow();
+    }
+
+    private static void send(HttpExchange exchange, int responseCode, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(responseCode, bytes.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(bytes);
+        output.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    public void serverErrors_areRetried() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                if (request < 3) {
+                    send(exchange, 503, "{}");
+                } else {
+                    send(exchange, 200, BODY);
+                }
+            }
+        };
+        ArrayList<Book> books = QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy);
+        assertNotNull(books);
+        assertEquals("v1", books.get(0).getId());
+        assertEquals(3, mRequests.get());
+    }
+
+    @Test
+    public void retries_stopAfterTheLastAttempt() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                send(exchange, 500, "{}");
+            }
+        };
+        assertNull(QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy));
+        assertEquals(3, mRequests.get());
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                send(exchange, 404, "{}");
+            }
+        };
+        assertNull(QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy));
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void retryAfter_isHonored() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                if (request == 1) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 429, "{}");
+                } else {
+                    send(exchange, 200, BODY);
+                }
+            }
+        };
+        long start = System.nanoTime();
+        assertNotNull(QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy));
+        assertTrue(millisSince(start) >= 1000);
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void pagePastTheEnd_returnsNoBooks() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                // What the Books API answers past the last result: no "items" at all.
+                send(exchange, 200, "{\"kind\":\"books#volumes\",\"totalItems\":40}");
+            }
+        };
+        ArrayList<Book> books = QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy);
+        assertNotNull(books);
+        assertTrue(books.isEmpty());
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void longRetryAfter_failsRightAway() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Retry-After", "3600");
+                send(exchange, 429, "{}");
+            }
+        };
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy));
+        assertTrue(millisSince(start) < 1000);
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void slowAttempt_isHedged() {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                if (request == 1) {
+                    sleep(5000);
+                }
+                send(exchange, 200, BODY);
+            }
+        };
+        long start = System.nanoTime();
+        ArrayList<Book> books = QueryUtils.fetchBookData(mUrl, null, null, null, null, mPolicy);
+        long elapsedMillis = millisSince(start);
+        assertNotNull(books);
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 2000);
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void hedgedAttempts_keepTheLaneOfTheRequest() throws Exception {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                send(exchange, 200, BODY);
+            }
+        };
+        RequestBudget budget =
+                new RequestBudget(new File(folder.getRoot(), "request-budget.bin"), 10);
+        HostRateLimiter rateLimiter = new HostRateLimiter(100, 10, budget);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(budget.tryAcquire(HostRateLimiter.Lane.INTERACTIVE, now));
+        }
+
+        // Prefetching has used up its share of the quota: nothing is sent, or retried.
+        long retries = SearchMetrics.getInstance().getCount(SearchMetrics.Counter.RETRIES);
+        assertNull(QueryUtils.fetchBookData(mUrl, null, null,
+                new FetchHandle(HostRateLimiter.Lane.PREFETCH), rateLimiter, mPolicy));
+        assertEquals(0, mRequests.get());
+        assertEquals(retries, SearchMetrics.getInstance().getCount(SearchMetrics.Counter.RETRIES));
+
+        // The next page is still sent, and counted for its own lane.
+        assertNotNull(QueryUtils.fetchBookData(mUrl, null, null,
+                new FetchHandle(HostRateLimiter.Lane.PAGING), rateLimiter, mPolicy));
+        assertEquals(1, mRequests.get());
+        assertEquals(1, budget.getUsed(HostRateLimiter.Lane.PAGING, now));
+        assertEquals(5, budget.getUsed(HostRateLimiter.Lane.INTERACTIVE, now));
+    }
+
+    @Test
+    public void cancel_stopsTheRetries() throws Exception {
+        mScript = new Script() {
+            @Override
+            public void respond(int request, HttpExchange exchange) throws IOException {
+                send(exchange, 503, "{}");
+            }
+        };
+        final FetchHandle handle = new FetchHandle();
+        FetchPolicy policy = new FetchPolicy(10, 2000, 2000, 200, mHedgeExecutor);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sleep(200);
+                handle.cancel();
+            }
+        }).start();
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchBookData(mUrl, null, null, handle, null, policy));
+        assertTrue(millisSince(start) < 1000);
+    }
+
+    @Test
+    public void timeouts_followObservedLatencies() {
+        assertEquals(HttpConnections.CONNECT_TIMEOUT, mPolicy.getConnectTimeoutMillis());
+        assertEquals(HttpConnections.READ_TIMEOUT, mPolicy.getReadTimeoutMillis());
+        assertEquals(200, mPolicy.getHedgeDelayMillis());
+
+        for (int i = 0; i < 100; i++) {
+            long millis = i < 90 ? 100 : 800;
+            mPolicy.recordSuccess(TimeUnit.MILLISECONDS.toNanos(millis / 2),
+                    TimeUnit.MILLISECONDS.toNanos(millis), TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        // Four times the p99, but not below the 2 s floor.
+        assertEquals(2000, mPolicy.getConnectTimeoutMillis());
+        assertTrue(mPolicy.getReadTimeoutMillis() >= 3200);
+        assertTrue(mPolicy.getReadTimeoutMillis() < 3600);
+        assertTrue(mPolicy.getHedgeDelayMillis() >= 800);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that equivalent queries give the same canonical phrase and request.
+ */
+public class QueryCanonicalizerTest {
+
+    @Test
+    public void whitespaceAndCase_areNormalized() {
+        assertEquals("harry+potter", QueryCanonicalizer.canonicalize("  Harry \t Potter "));
+        assertEquals("harry+potter", QueryCanonicalizer.canonicalize("HARRY+POTTER"));
+        assertEquals("o+reilly", QueryCanonicalizer.canonicalize("O'Reilly"));
+        assertEquals("", QueryCanonicalizer.canonicalize(" + "));
+    }
+
+    @Test
+    public void accentsAndCompatibilityForms_areFolded() {
+        // Precomposed and decomposed accents, a ligature and full-width letters.
+        assertEquals("cafe+muller", QueryCanonicalizer.canonicalize("Caf\u00e9 M\u00fcller"));
+        assertEquals("cafe+muller", QueryCanonicalizer.canonicalize("Cafe\u0301 Mu\u0308ller"));
+        assertEquals("fish", QueryCanonicalizer.canonicalize("\ufb01sh"));
+        assertEquals("abc", QueryCanonicalizer.canonicalize("\uff21\uff22\uff23"));
+    }
+
+    @Test
+    public void otherScripts_keepTheirWords() {
+        // Hindi with a virama and vowel signs, and Korean syllables.
+        String hindi = "\u0939\u093f\u0928\u094d\u0926\u0940";
+        assertEquals(hindi, QueryCanonicalizer.canonicalize(hindi));
+        assertEquals("\ud55c\uad6d+\uc5b4", QueryCanonicalizer.canonicalize("\ud55c\uad6d \uc5b4"));
+        assertEquals("\u043c\u0438\u0440", QueryCanonicalizer.canonicalize("\u041c\u0438\u0440"));
+    }
+
+    @Test
+    public void qualifiers_areKeptWithTheirWord() {
+        assertEquals("intitle:hobbit+inauthor:tolkien",
+                QueryCanonicalizer.canonicalize("InTitle:Hobbit  inauthor: Tolkien"));
+        assertEquals("foo+bar", QueryCanonicalizer.canonicalize("foo:bar"));
+        assertEquals("java", QueryCanonicalizer.canonicalize("java intitle:"));
+        assertEquals(Arrays.asList("hobbit", "tolkien"), Arrays.asList(
+                QueryCanonicalizer.matchWords("intitle:hobbit+inauthor:tolkien")));
+    }
+
+    @Test
+    public void canonicalPhrase_isStable() {
+        String[] texts = {"Intitle: Caf\u00e9  Society", "\ufb01sh & chips", "a+b c"};
+        for (String text : texts) {
+            String phrase = QueryCanonicalizer.canonicalize(text);
+            assertEquals(phrase, QueryCanonicalizer.canonicalize(phrase));
+        }
+    }
+
+    @Test
+    public void queryParameter_isUrlEncoded() {
+        assertEquals("intitle%3Ahobbit+%D0%BC%D0%B8%D1%80",
+                QueryCanonicalizer.toQueryParameter("intitle:hobbit+\u043c\u0438\u0440"));
+        HttpBookSearchClient client = new HttpBookSearchClient("http://h/v", null, null);
+        assertTrue(client.createRequestUrl("java", 0, 20).startsWith("http://h/v?q=java&"));
+    }
+
+    @Test
+    public void localMatching_ignoresAccentsAndQualifiers() {
+        List<Book> books = Collections.singletonList(new Book("Les Mis\u00e9rables",
+                Collections.singletonList("Victor Hugo"), null));
+        assertEquals(1, BookFilter.filter(books, "miserables").size());
+        assertEquals(1, BookFilter.filter(books, "Mis\u00c9rables").size());
+        assertEquals(1, BookFilter.filter(books, "intitle:les+inauthor:hugo").size());
+        assertEquals(0, BookFilter.filter(books, "inauthor:tolkien").size());
+    }
+}
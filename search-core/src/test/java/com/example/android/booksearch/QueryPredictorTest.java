@@ -0,0 +1,109 @@
+package com.example.android.booksearch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the ranking, persistence and prefetching of {@link QueryPredictor}.
+ */
+public class QueryPredictorTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Client answering every search with one book and a response of the given size.
+     */
+    private static final class FakeClient implements BookSearchClient {
+        final ArrayList<String> searches = new ArrayList<>();
+        final long responseBytes;
+
+        FakeClient(long responseBytes) {
+            this.responseBytes = responseBytes;
+        }
+
+        @Override
+        public ArrayList<Book> search(String searchPhrase, int startIndex, int maxResults,
+                                      FetchHandle handle) {
+            searches.add(searchPhrase);
+            SearchMetrics.getInstance().recordResponseSize(responseBytes);
+            return new ArrayList<>(Collections.singletonList(
+                    new Book(searchPhrase, Collections.<String>emptyList(), null)));
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File newFile() {
+        return new File(folder.getRoot(), "query-history.bin");
+    }
+
+    @Test
+    public void predict_ranksFrequentAndRecentSearchesFirst() throws Exception {
+        QueryPredictor predictor = new QueryPredictor(newFile());
+        long now = 100 * DAY;
+        // Searched often, but a month ago.
+        for (int i = 0; i < 4; i++) {
+            predictor.record("dune", now - 30 * DAY);
+        }
+        // Searched a few times last week.
+        predictor.record("Harry  Potter", now - 8 * DAY);
+        predictor.record("harry potter", now - 7 * DAY);
+        predictor.record("HARRY+POTTER", now - 6 * DAY);
+        // Searched once, right now.
+        predictor.record("tolkien", now);
+
+        assertEquals(Arrays.asList("harry+potter", "tolkien", "dune"), predictor.predict(5, now));
+        assertEquals(Collections.singletonList("harry+potter"), predictor.predict(1, now));
+    }
+
+    @Test
+    public void record_keepsNewSearchesWhenFull() throws Exception {
+        QueryPredictor predictor = new QueryPredictor(newFile());
+        for (int i = 0; i < QueryPredictor.MAX_QUERIES; i++) {
+            predictor.record("query" + i, 0);
+            predictor.record("query" + i, 0);
+        }
+        predictor.record("new", DAY);
+        assertTrue(predictor.predict(QueryPredictor.MAX_QUERIES + 1, DAY).contains("new"));
+        assertEquals(QueryPredictor.MAX_QUERIES,
+                predictor.predict(QueryPredictor.MAX_QUERIES + 1, DAY).size());
+    }
+
+    @Test
+    public void history_isWrittenAndReadBack() throws Exception {
+        File file = newFile();
+        QueryPredictor predictor = new QueryPredictor(file);
+        predictor.record("dune", 0);
+        predictor.record("tolkien", 0);
+        predictor.record("tolkien", 0);
+        assertTrue(predictor.write());
+
+        assertEquals(Arrays.asList("tolkien", "dune"), new QueryPredictor(file).predict(5, 0));
+    }
+
+    @Test
+    public void prefetch_stopsAtTheByteBudget() throws Exception {
+        QueryPredictor predictor = new QueryPredictor(newFile());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            predictor.record("query" + i, now);
+        }
+        FakeClient client = new FakeClient(1000);
+        // The third search starts with 2000 bytes received, the fourth does not start.
+        assertEquals(3, predictor.prefetch(client, 5, 20, 2500, null));
+        assertEquals(3, client.searches.size());
+
+        FetchHandle cancelled = new FetchHandle();
+        cancelled.cancel();
+        assertEquals(0, predictor.prefetch(new FakeClient(0), 5, 20, 2500, cancelled));
+    }
+}
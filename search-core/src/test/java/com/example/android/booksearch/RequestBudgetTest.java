@@ -0,0 +1,107 @@
+package com.example.android.booksearch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the daily shares of the lanes of {@link RequestBudget}, and the priorities of
+ * the lanes of {@link HostRateLimiter}.
+ */
+public class RequestBudgetTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Early afternoon in California, on some day.
+     */
+    private static final long NOON = 20000 * DAY + 20 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File newFile() {
+        return new File(folder.getRoot(), "request-budget.bin");
+    }
+
+    private static int acquireAll(RequestBudget budget, HostRateLimiter.Lane lane, long now) {
+        int acquired = 0;
+        while (budget.tryAcquire(lane, now)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    @Test
+    public void lanes_stopAtTheirShareOfTheQuota() throws Exception {
+        RequestBudget budget = new RequestBudget(newFile(), 100);
+        assertEquals(50, acquireAll(budget, HostRateLimiter.Lane.PREFETCH, NOON));
+        assertEquals(25, acquireAll(budget, HostRateLimiter.Lane.BATCH, NOON));
+        assertEquals(15, acquireAll(budget, HostRateLimiter.Lane.PAGING, NOON));
+        assertEquals(10, budget.getRemaining(NOON));
+        assertEquals(10, acquireAll(budget, HostRateLimiter.Lane.INTERACTIVE, NOON));
+
+        // The quota is reset at midnight Pacific time.
+        assertEquals(100, budget.getRemaining(NOON + 12 * 60 * 60 * 1000L));
+    }
+
+    @Test
+    public void counters_surviveARestart() throws Exception {
+        File file = newFile();
+        RequestBudget budget = new RequestBudget(file, 100);
+        for (int i = 0; i < 7; i++) {
+            assertTrue(budget.tryAcquire(HostRateLimiter.Lane.PAGING, NOON));
+        }
+        budget.markExhausted(NOON);
+        assertFalse(budget.tryAcquire(HostRateLimiter.Lane.INTERACTIVE, NOON));
+
+        RequestBudget restarted = new RequestBudget(file, 100);
+        assertEquals(7, restarted.getUsed(HostRateLimiter.Lane.PAGING, NOON));
+        assertEquals(0, restarted.getRemaining(NOON));
+        assertEquals(100, restarted.getRemaining(NOON + DAY));
+    }
+
+    @Test
+    public void failedWrite_isRetriedByTheNextRequest() throws Exception {
+        File directory = new File(folder.getRoot(), "budget");
+        File file = new File(directory, "request-budget.bin");
+        RequestBudget budget = new RequestBudget(file, 100);
+        // The tenth request writes the file, which fails without its directory.
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryAcquire(HostRateLimiter.Lane.PAGING, NOON));
+        }
+        assertFalse(file.exists());
+
+        assertTrue(directory.mkdir());
+        assertTrue(budget.tryAcquire(HostRateLimiter.Lane.PAGING, NOON));
+        assertEquals(11, new RequestBudget(file, 100).getUsed(HostRateLimiter.Lane.PAGING, NOON));
+    }
+
+    @Test
+    public void backgroundLanes_leaveTheBurstToTheUser() {
+        HostRateLimiter rateLimiter = new HostRateLimiter(1, 10);
+        FetchHandle prefetch = new FetchHandle(HostRateLimiter.Lane.PREFETCH);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.acquire("host", prefetch));
+        }
+        // The sixth prefetch waits for a token, until it is cancelled.
+        prefetch.cancel();
+        assertFalse(rateLimiter.acquire("host", prefetch));
+        // The user still gets half of the burst right away.
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.acquire("host", new FetchHandle()));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        // Once the server asked to slow down, only the user waits for it.
+        rateLimiter.pause("host", 60 * 1000);
+        assertFalse(rateLimiter.acquire("host",
+                new FetchHandle(HostRateLimiter.Lane.PAGING)));
+    }
+}
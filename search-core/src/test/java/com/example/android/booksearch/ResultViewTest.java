@@ -0,0 +1,96 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the date keys of {@link Book} and the sorting, filtering and grouping of
+ * {@link ResultView}.
+ */
+public class ResultViewTest {
+
+    private static Book book(String title, String author, String publisher, String date) {
+        List<String> authors = author != null
+                ? Collections.singletonList(author) : Collections.<String>emptyList();
+        return new Book(title, authors, publisher, date, null);
+    }
+
+    private static final List<Book> BOOKS = Arrays.asList(
+            book("A", "Zadie Smith", "Penguin", "2000-05-01"),
+            book("B", "\u00c9mile Zola", "Folio", "1885"),
+            book("C", null, null, null),
+            book("D", "Ian Banks", "Penguin", "2012-03"),
+            book("E", "Ann Leckie", "Orbit", "2013-10-01T00:00:00"));
+
+    private static String titles(List<Book> books) {
+        StringBuilder titles = new StringBuilder();
+        for (Book book : books) {
+            titles.append(book.getTitle());
+        }
+        return titles.toString();
+    }
+
+    @Test
+    public void dateKey_parsesPartialDates() {
+        assertEquals(19970626, Book.parseDateKey("1997-06-26"));
+        assertEquals(19970600, Book.parseDateKey("1997-06"));
+        assertEquals(19970000, Book.parseDateKey("1997"));
+        assertEquals(20131001, Book.parseDateKey("2013-10-01T00:00:00"));
+        assertEquals(19970000, Book.parseDateKey("1997-13-01"));
+        assertEquals(0, Book.parseDateKey("unknown"));
+        assertEquals(0, Book.parseDateKey(null));
+    }
+
+    @Test
+    public void defaultView_keepsTheOrder() {
+        assertEquals("ABCDE", titles(ResultView.DEFAULT.apply(BOOKS)));
+    }
+
+    @Test
+    public void sort_putsMissingValuesLast() {
+        ResultView view = ResultView.DEFAULT;
+        assertEquals("EDABC", titles(view.withSort(ResultView.Sort.DATE_NEWEST).apply(BOOKS)));
+        assertEquals("BADEC", titles(view.withSort(ResultView.Sort.DATE_OLDEST).apply(BOOKS)));
+        // Accents are ignored, "Emile" comes before "Ian".
+        assertEquals("EBDAC", titles(view.withSort(ResultView.Sort.AUTHOR).apply(BOOKS)));
+        assertEquals("BEADC", titles(view.withSort(ResultView.Sort.PUBLISHER).apply(BOOKS)));
+    }
+
+    @Test
+    public void filters_leaveOutOtherBooks() {
+        assertEquals("DE", titles(ResultView.DEFAULT.withYears(2010, 0).apply(BOOKS)));
+        assertEquals("AB", titles(ResultView.DEFAULT.withYears(0, 2005).apply(BOOKS)));
+        assertEquals("AD", titles(ResultView.DEFAULT.withPublisher("PENGUIN").apply(BOOKS)));
+    }
+
+    @Test
+    public void grouping_keepsTheSortWithinPublishers() {
+        ResultView view = ResultView.DEFAULT.withGroupByPublisher(true);
+        assertEquals("BEADC", titles(view.apply(BOOKS)));
+        assertEquals("BEDAC",
+                titles(view.withSort(ResultView.Sort.DATE_NEWEST).apply(BOOKS)));
+    }
+
+    @Test
+    public void apply_sortsThousandsOfBooksQuickly() {
+        ArrayList<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            books.add(book("Book " + i, "Author " + (i * 7919 % 1000), "Publisher " + i % 40,
+                    (1900 + i * 31 % 120) + "-0" + (1 + i % 9)));
+        }
+        ResultView view = ResultView.DEFAULT.withSort(ResultView.Sort.AUTHOR)
+                .withGroupByPublisher(true);
+        view.apply(books);
+        long start = System.nanoTime();
+        ArrayList<Book> sorted = view.apply(books);
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertEquals(books.size(), sorted.size());
+        assertTrue("Took " + millis + " ms", millis < 200);
+    }
+}
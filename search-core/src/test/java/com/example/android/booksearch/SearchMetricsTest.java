@@ -0,0 +1,78 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the accuracy of {@link Histogram} and the export of {@link SearchMetrics}.
+ */
+public class SearchMetricsTest {
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertClose(5000, histogram.getPercentile(50));
+        assertClose(9900, histogram.getPercentile(99));
+        assertEquals(10000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void percentiles_ofSkewedLatencies() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(42);
+        // 98% fast requests around 100 ms, 2% slow ones around 5 s (in microseconds).
+        for (int i = 0; i < 100000; i++) {
+            boolean slow = i % 50 == 0;
+            histogram.record((slow ? 5000000 : 100000) + random.nextInt(10000));
+        }
+        assertClose(105000, histogram.getPercentile(50));
+        assertClose(5005000, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void hugeAndNegativeValues_areClamped() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void json_containsPhasesAndCounters() {
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        metrics.reset();
+        metrics.record(SearchMetrics.Phase.PARSE, 2500000);
+        metrics.recordResponseSize(12345);
+        metrics.increment(SearchMetrics.Counter.CACHE_HITS);
+
+        String json = metrics.toJson();
+        assertTrue(json, json.contains("\"parse\": {"));
+        assertTrue(json, json.contains("\"max\": 2500"));
+        assertTrue(json, json.contains("\"response_bytes\": 12345"));
+        assertTrue(json, json.contains("\"cache_hits\": 1"));
+        assertTrue(metrics.toString().contains("parse"));
+        metrics.reset();
+    }
+
+    /**
+     * Assert the value is within the 1/16 precision of the histogram buckets.
+     */
+    private static void assertClose(long expected, long actual) {
+        assertTrue("Expected about " + expected + ", got " + actual,
+                Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.booksearch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link SearchSnapshot} survives a round trip through its file.
+ */
+public class SearchSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File newFile() {
+        return new File(folder.getRoot(), "search-snapshot.bin");
+    }
+
+    private static ArrayList<Book> books(int count) {
+        ArrayList<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new Book("v" + i, "Book " + i, Arrays.asList("Author " + i % 7),
+                    i % 2 == 0 ? "Publisher" : null, "2017", "https://example.com/" + i));
+        }
+        return books;
+    }
+
+    @Test
+    public void snapshot_isReadBackFromTheFile() throws Exception {
+        File file = newFile();
+        SearchSnapshot snapshot =
+                new SearchSnapshot("java+concurrency", books(60), 60, true, 42, -17, 1234L);
+        assertTrue(snapshot.write(file));
+
+        SearchSnapshot read = SearchSnapshot.read(file);
+        assertNotNull(read);
+        assertEquals("java+concurrency", read.getSearchPhrase());
+        assertEquals(books(60), read.getBooks());
+        assertEquals(60, read.getNextStartIndex());
+        assertTrue(read.hasMorePages());
+        assertEquals(42, read.getScrollPosition());
+        assertEquals(-17, read.getScrollOffset());
+        assertEquals(1234L, read.getSavedAt());
+    }
+
+    @Test
+    public void missingOrDamagedFile_isIgnored() throws Exception {
+        File file = newFile();
+        assertNull(SearchSnapshot.read(file));
+
+        new SearchSnapshot("java", books(10), 20, false, 0, 0, 1L).write(file);
+        RandomAccessFile damaged = new RandomAccessFile(file, "rw");
+        damaged.setLength(damaged.length() / 2);
+        damaged.close();
+        assertNull(SearchSnapshot.read(file));
+    }
+
+    @Test
+    public void manyBooks_areReadBack() throws Exception {
+        File file = newFile();
+        new SearchSnapshot("java", books(500), 500, true, 0, 0, 1L).write(file);
+        // The time taken is measured by SnapshotBenchmark.
+        SearchSnapshot read = SearchSnapshot.read(file);
+        assertEquals(500, read.getBooks().size());
+        assertEquals("Book 499", read.getBooks().get(499).getTitle());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the completions of {@link SuggestionTrie}, with and without typos, and its cost
+ * with many suggestions.
+ */
+public class SuggestionTrieTest {
+
+    private static SuggestionTrie newTrie() {
+        return new SuggestionTrie.Builder()
+                .add("Harry Potter and the Goblet of Fire", 3)
+                .add("Harry Potter and the Philosopher's Stone", 5)
+                .add("Harrison, Harry", 1)
+                .add("Hardy, Thomas", 2)
+                .add("The Hobbit", 4)
+                .addQueries(Collections.singletonList("tolkien"))
+                .add("T\u00f6lkien", 1)
+                .build();
+    }
+
+    @Test
+    public void complete_returnsHeaviestCompletionsFirst() {
+        SuggestionTrie trie = newTrie();
+        assertEquals(6, trie.size());
+        assertEquals(Arrays.asList("harry potter and the philosopher s stone",
+                "harry potter and the goblet of fire", "hardy thomas"),
+                trie.complete("HAR", 3));
+        assertEquals(Collections.singletonList("harry potter and the philosopher s stone"),
+                trie.complete("harry p", 1));
+        // The weights of the same folded text add up.
+        assertEquals(Arrays.asList("tolkien", "the hobbit"), trie.complete("t", 5));
+        // A trailing space ends the word.
+        assertEquals("harry potter ", SuggestionTrie.normalize(" Harry,  Potter ", true));
+        assertEquals(Arrays.asList("harry potter and the philosopher s stone",
+                "harry potter and the goblet of fire"), trie.complete("harry p", 5));
+        assertEquals(Collections.<String>emptyList(), trie.complete("  ", 5));
+    }
+
+    @Test
+    public void complete_toleratesOneTypo() {
+        SuggestionTrie trie = newTrie();
+        // Wrong, missing, extra and swapped letters.
+        assertEquals(Collections.singletonList("the hobbit"), trie.complete("the hobpit", 5));
+        assertEquals(Collections.singletonList("the hobbit"), trie.complete("the hobit", 5));
+        assertEquals(Collections.singletonList("the hobbit"), trie.complete("the hobbbit", 5));
+        assertEquals(Collections.singletonList("tolkien"), trie.complete("tlokien", 5));
+        // Completions of the text as typed come first.
+        List<String> suggestions = trie.complete("hardy", 3);
+        assertEquals("hardy thomas", suggestions.get(0));
+        assertTrue(suggestions.contains("harry potter and the philosopher s stone"));
+        // Two typos are too many, and short texts are not corrected.
+        assertEquals(Collections.<String>emptyList(), trie.complete("the hoppit", 5));
+        assertEquals(Collections.<String>emptyList(), trie.complete("xo", 5));
+    }
+
+    @Test
+    public void withRecent_mergesTheCompletionsOfBothTries() {
+        SuggestionTrie recent = new SuggestionTrie.Builder()
+                .addQueries(Collections.singletonList("harry+potter"))
+                .add("Hardy, Thomas", 5)
+                .add("The Hobbit", 10)
+                .build();
+        SuggestionTrie trie = newTrie().withRecent(recent);
+        // The weights of a text in both tries add up.
+        assertEquals(Arrays.asList("harry potter", "hardy thomas",
+                "harry potter and the philosopher s stone"), trie.complete("har", 3));
+        assertEquals(Arrays.asList("the hobbit", "tolkien"), trie.complete("t", 5));
+        // Typo corrections still come after the completions.
+        assertEquals(Arrays.asList("hardy thomas", "harry potter"), trie.complete("hardy", 2));
+        // The recent suggestions are replaced, not added to.
+        assertEquals(newTrie().complete("har", 3),
+                trie.withRecent(SuggestionTrie.EMPTY).complete("har", 3));
+    }
+
+    @Test
+    public void complete_isFastAndCompactWithManySuggestions() {
+        Random random = new Random(42);
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 1 + random.nextInt(5);
+            for (int w = 0; w < words; w++) {
+                int length = 2 + random.nextInt(8);
+                for (int c = 0; c < length; c++) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                text.append(' ');
+            }
+            builder.add(text.toString(), 1 + random.nextInt(100));
+        }
+        SuggestionTrie trie = builder.build();
+        assertTrue(trie.getMemoryBytes() < 8 * 1024 * 1024);
+
+        String[] prefixes = new String[1000];
+        for (int i = 0; i < prefixes.length; i++) {
+            StringBuilder prefix = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int c = 0; c < length; c++) {
+                prefix.append((char) ('a' + random.nextInt(26)));
+            }
+            prefixes[i] = prefix.toString();
+        }
+        // Warm up, then time a keystroke.
+        for (String prefix : prefixes) {
+            trie.complete(prefix, 5);
+        }
+        long start = System.nanoTime();
+        for (String prefix : prefixes) {
+            trie.complete(prefix, 5);
+        }
+        long perKeystroke = (System.nanoTime() - start) / prefixes.length;
+        assertTrue("Took " + perKeystroke + " ns", perKeystroke < 1000000);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.booksearch;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link Utf8Reader} decodes like {@link String#String(byte[], String)}
+ * whatever the read sizes, and enforces its limit.
+ */
+public class Utf8ReaderTest {
+
+    /**
+     * Two, three and four byte sequences, which end up split across buffer boundaries.
+     */
+    private static final String MIXED = "Za\u017c\u00f3\u0142\u0107 \u20ac \ud83d\udcda "
+            + "g\u0119\u015bl\u0105 ja\u017a\u0144 ";
+
+    /**
+     * Returns the bytes of the array a few at a time, like a slow network.
+     */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 7));
+        }
+    }
+
+    private static String readAll(InputStream input, int chunk) throws IOException {
+        Utf8Reader reader = new Utf8Reader(input, Long.MAX_VALUE);
+        StringBuilder text = new StringBuilder();
+        char[] chars = new char[chunk];
+        int read;
+        while ((read = reader.read(chars, 0, chunk)) != -1) {
+            text.append(chars, 0, read);
+        }
+        reader.close();
+        return text.toString();
+    }
+
+    @Test
+    public void read_decodesLikeString() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 * BufferPool.BUFFER_SIZE) {
+            text.append(MIXED);
+        }
+        String expected = text.toString();
+        byte[] bytes = expected.getBytes("UTF-8");
+
+        assertEquals(expected, readAll(new ByteArrayInputStream(bytes), 1024));
+        assertEquals(expected, readAll(new TrickleInputStream(bytes), 1024));
+        // One char at a time, surrogate pairs included.
+        assertEquals(expected, readAll(new ByteArrayInputStream(bytes), 1));
+    }
+
+    @Test
+    public void read_replacesMalformedBytes() throws Exception {
+        byte[] bytes = {'a', (byte) 0xc3, 'b', (byte) 0xe2, (byte) 0x82};
+        assertEquals("a\ufffdb\ufffd", readAll(new ByteArrayInputStream(bytes), 16));
+    }
+
+    @Test(expected = Utf8Reader.BodyTooLargeException.class)
+    public void read_failsPastTheLimit() throws Exception {
+        Utf8Reader reader = new Utf8Reader(new ByteArrayInputStream(new byte[1000]), 999);
+        char[] chars = new char[100];
+        while (reader.read(chars, 0, chars.length) != -1) {
+            // Read to the end.
+        }
+    }
+
+    @Test
+    public void close_givesTheBufferBack() throws Exception {
+        new Utf8Reader(new ByteArrayInputStream(new byte[0]), 0).close();
+        byte[] buffer = BufferPool.acquire();
+        assertEquals(BufferPool.BUFFER_SIZE, buffer.length);
+        BufferPool.release(buffer);
+        // The same buffer is used by the next reader.
+        assertSame(buffer, BufferPool.acquire());
+    }
+}